@@ -1,5 +1,21 @@
+package tareas;
+
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+import java.util.stream.*;
+import java.util.zip.CRC32;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.text.Normalizer;
+import javax.management.*;
 
 /**
  * Proyecto Final - Sistema de Gestion de Tareas Avanzado
@@ -12,6 +28,10 @@ import java.io.*;
  * - Mantengo el diseño original pero le agrego funciones que faltaban:
  *   guardar/cargar, marcar completada, eliminar, listar todas, etc.
  * - Comentarios estilo cotorro (pa que no se haga tan denso).
+ * - Compilar: mvn package  (o java SistemaTareasAvanzado.java directo, Java 17+)
+ *   Correr:   java -cp target/classes tareas.SistemaTareasAvanzado
+ *   Benchmarks (JMH) en benchmarks/, ver el pom de ahi.
+ *   Modo red: --servidor [puerto], y desde otra terminal --cliente (el menu) o --carga (ver main).
  */
 public class SistemaTareasAvanzado {
 
@@ -19,23 +39,44 @@ public class SistemaTareasAvanzado {
     // Representa una tarea con id autoincremental, titulo, depto, urgencia, fecha y estado.
     static class Tarea implements Serializable {
         private static final long serialVersionUID = 1L;
-        private static int NEXT_ID = 1;
+        private static final AtomicInteger NEXT_ID = new AtomicInteger(1); // seguro entre hilos
         int id;
         String titulo;
         String departamento;
         int urgencia; // 1-5
         Date fechaEntrega;
         boolean completada;
+        long creadaEn; // ms; para medir cuanto tarda en completarse (0 = no se sabe, tareas viejas)
+        transient Runnable accion; // lo que hace la tarea al ejecutarse (EjecutorTareas), no se guarda
 
         Tarea(String titulo, String depto, int urgencia, Date fecha) {
-            this.id = NEXT_ID++;
+            this.id = nuevoId();
             this.titulo = titulo;
             this.departamento = depto;
             this.urgencia = urgencia;
             this.fechaEntrega = fecha;
             this.completada = false;
+            this.creadaEn = System.currentTimeMillis();
+        }
+
+        // con id ya conocido (al reproducir la bitacora o importar)
+        Tarea(int id, String titulo, String depto, int urgencia, Date fecha, boolean completada) {
+            this.id = id;
+            this.titulo = titulo;
+            this.departamento = depto;
+            this.urgencia = urgencia;
+            this.fechaEntrega = fecha;
+            this.completada = completada;
+            reservarId(id);
+        }
+
+        // el siguiente id autoincremental nunca repite uno que ya existe
+        static void reservarId(int id) {
+            NEXT_ID.accumulateAndGet(id + 1, Math::max);
         }
 
+        static int nuevoId() { return NEXT_ID.getAndIncrement(); }
+
         void marcarCompletada() { this.completada = true; }
 
         @Override
@@ -48,185 +89,4159 @@ public class SistemaTareasAvanzado {
 
     // Cola de prioridad (urgencia + fecha) 
     // Usada para seleccionar primero lo mas urgente y si hay empate, lo con fecha mas cercana.
+    // Es un heap binario indexado por Tarea.id: guardamos en que posicion del arreglo esta
+    // cada tarea, asi quitar o re-priorizar es O(log n) y no hay que reconstruir la cola.
     static class ColaPrioridad {
-        PriorityQueue<Tarea> pq = new PriorityQueue<>((a, b) -> {
+        static final Comparator<Tarea> ORDEN = (a, b) -> {
             int cmp = Integer.compare(b.urgencia, a.urgencia);
             if (cmp == 0) return a.fechaEntrega.compareTo(b.fechaEntrega);
             return cmp;
-        });
+        };
+
+        Tarea[] heap = new Tarea[16];
+        int size = 0;
+        MapaEnteros pos = new MapaEnteros(16); // id -> indice en el heap (sin Integer por tarea)
+
+        void add(Tarea t) {
+            if (pos.containsKey(t.id)) return; // ya esta en la cola, no la duplicamos
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            heap[size] = t;
+            pos.put(t.id, size);
+            subir(size++);
+        }
+
+        // muchas de golpe: se pegan al final y se arma el heap de abajo hacia arriba (Floyd), O(n)
+        void agregarTodas(Collection<Tarea> tareas) {
+            if (size + tareas.size() > heap.length)
+                heap = Arrays.copyOf(heap, Math.max(heap.length * 2, size + tareas.size()));
+            for (Tarea t : tareas) {
+                if (pos.containsKey(t.id)) continue;
+                heap[size] = t;
+                pos.put(t.id, size++);
+            }
+            for (int i = (size >>> 1) - 1; i >= 0; i--) bajar(i);
+        }
+
+        Tarea peek() { return size == 0 ? null : heap[0]; }
+
+        Tarea poll() {
+            if (size == 0) return null;
+            Tarea top = heap[0];
+            quitarEn(0);
+            return top;
+        }
+
+        // quita la tarea con ese id (si esta) en O(log n)
+        boolean remove(int id) {
+            int i = pos.get(id, -1);
+            if (i < 0) return false;
+            quitarEn(i);
+            return true;
+        }
+
+        // la urgencia o la fecha de esa tarea ya cambio (la Tarea es la misma que tienen db, gestor y
+        // el planificador, por eso solo reprogramarTarea las cambia): reacomoda solo su camino
+        boolean reubicar(int id) {
+            int i = pos.get(id, -1);
+            if (i < 0) return false;
+            reacomodar(i);
+            return true;
+        }
+
+        boolean contains(int id) { return pos.containsKey(id); }
+        int size() { return size; }
+        boolean isEmpty() { return size == 0; }
+        List<Tarea> toList() { return new ArrayList<>(Arrays.asList(heap).subList(0, size)); }
+
+        private void quitarEn(int i) {
+            pos.remove(heap[i].id, -1);
+            size--;
+            if (i != size) {
+                // el ultimo ocupa el hueco y luego lo acomodamos
+                heap[i] = heap[size];
+                pos.put(heap[i].id, i);
+                heap[size] = null;
+                reacomodar(i);
+            } else {
+                heap[size] = null;
+            }
+        }
+
+        private void reacomodar(int i) {
+            if (!subir(i)) bajar(i);
+        }
+
+        private boolean subir(int i) {
+            Tarea t = heap[i];
+            int inicio = i;
+            while (i > 0) {
+                int padre = (i - 1) >>> 1;
+                if (ORDEN.compare(t, heap[padre]) >= 0) break;
+                heap[i] = heap[padre];
+                pos.put(heap[i].id, i);
+                i = padre;
+            }
+            heap[i] = t;
+            pos.put(t.id, i);
+            return i != inicio;
+        }
+
+        private void bajar(int i) {
+            Tarea t = heap[i];
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= size) break;
+                if (hijo + 1 < size && ORDEN.compare(heap[hijo + 1], heap[hijo]) < 0) hijo++;
+                if (ORDEN.compare(heap[hijo], t) >= 0) break;
+                heap[i] = heap[hijo];
+                pos.put(heap[i].id, i);
+                i = hijo;
+            }
+            heap[i] = t;
+            pos.put(t.id, i);
+        }
+    }
+
+    // ====== Árbol binario para empleados ======
+    // Sirve para organizar empleados por nombre y buscarlos rapido.
+    // Es un AVL (se balancea solo): aunque RH nos pase los nombres ya ordenados no se hace
+    // lista ligada, y todo es iterativo para no reventar la pila con miles de nombres.
+    static class NodoEmpleado {
+        String nombre;
+        String departamento;
+        NodoEmpleado izq, der;
+        int altura = 1;
+
+        NodoEmpleado(String n, String d) {
+            nombre = n;
+            departamento = d;
+        }
+    }
+
+    static class ArbolEmpleados {
+        private static final int MAX_ALTURA = 64; // un AVL de 2^31 nodos no pasa de ~45 niveles
+        NodoEmpleado raiz;
+        int size;
+
+        // si el nombre ya existe (sin importar mayusculas) solo se actualiza su depto;
+        // regresa el nombre tal como quedo guardado (el que ya estaba, si existia)
+        String insertar(String nombre, String depto) {
+            NodoEmpleado[] camino = new NodoEmpleado[MAX_ALTURA];
+            int n = 0;
+            NodoEmpleado actual = raiz;
+            while (actual != null) {
+                int cmp = comparar(nombre, actual.nombre);
+                if (cmp == 0) {
+                    actual.departamento = depto;
+                    return actual.nombre;
+                }
+                camino[n++] = actual;
+                actual = cmp < 0 ? actual.izq : actual.der;
+            }
+            NodoEmpleado nuevo = new NodoEmpleado(nombre, depto);
+            size++;
+            if (n == 0) {
+                raiz = nuevo;
+                return nombre;
+            }
+            NodoEmpleado padre = camino[n - 1];
+            if (comparar(nombre, padre.nombre) < 0) padre.izq = nuevo;
+            else padre.der = nuevo;
+            rebalancear(camino, n);
+            return nombre;
+        }
+
+        // regresa el departamento del empleado, o null si no existe
+        String buscar(String nombre) {
+            NodoEmpleado actual = raiz;
+            while (actual != null) {
+                int cmp = comparar(nombre, actual.nombre);
+                if (cmp == 0) return actual.departamento;
+                actual = cmp < 0 ? actual.izq : actual.der;
+            }
+            return null;
+        }
+
+        // borra el empleado; regresa el nombre tal como estaba guardado (o null si no estaba)
+        String eliminar(String nombre) {
+            NodoEmpleado[] camino = new NodoEmpleado[MAX_ALTURA];
+            int n = 0;
+            NodoEmpleado actual = raiz;
+            while (actual != null) {
+                int cmp = comparar(nombre, actual.nombre);
+                if (cmp == 0) break;
+                camino[n++] = actual;
+                actual = cmp < 0 ? actual.izq : actual.der;
+            }
+            if (actual == null) return null;
+            String quitado = actual.nombre;
+            if (actual.izq != null && actual.der != null) {
+                // dos hijos: copiamos el sucesor aqui y borramos el sucesor
+                camino[n++] = actual;
+                NodoEmpleado suc = actual.der;
+                while (suc.izq != null) {
+                    camino[n++] = suc;
+                    suc = suc.izq;
+                }
+                actual.nombre = suc.nombre;
+                actual.departamento = suc.departamento;
+                actual = suc;
+            }
+            NodoEmpleado hijo = actual.izq != null ? actual.izq : actual.der;
+            if (n == 0) raiz = hijo;
+            else if (camino[n - 1].izq == actual) camino[n - 1].izq = hijo;
+            else camino[n - 1].der = hijo;
+            size--;
+            rebalancear(camino, n);
+            return quitado;
+        }
+
+        // empleados cuyo nombre empieza con el prefijo (sin importar mayusculas)
+        List<NodoEmpleado> buscarPorPrefijo(String prefijo) {
+            List<NodoEmpleado> res = new ArrayList<>();
+            recorrerDesde(prefijo, n -> {
+                if (!n.nombre.regionMatches(true, 0, prefijo, 0, prefijo.length())) return false;
+                res.add(n);
+                return true;
+            });
+            return res;
+        }
+
+        // empleados entre desde y hasta (ambos incluidos); null = sin limite
+        List<NodoEmpleado> rango(String desde, String hasta) {
+            List<NodoEmpleado> res = new ArrayList<>();
+            recorrerDesde(desde, n -> {
+                if (hasta != null && comparar(n.nombre, hasta) > 0) return false;
+                res.add(n);
+                return true;
+            });
+            return res;
+        }
+
+        // todos en orden (un solo recorrido)
+        List<NodoEmpleado> todos() { return rango(null, null); }
+
+        // agrega muchos de golpe: se ordenan (TimSort es casi lineal si ya vienen ordenados), se
+        // mezclan con los que ya estaban y el arbol se arma balanceado en O(n). Si un nombre se
+        // repite gana el ultimo depto.
+        void insertarTodos(List<NodoEmpleado> nuevos) {
+            nuevos.sort((a, b) -> comparar(a.nombre, b.nombre));
+            List<NodoEmpleado> viejos = todos();
+            List<NodoEmpleado> mezcla = new ArrayList<>(viejos.size() + nuevos.size());
+            int i = 0, j = 0;
+            while (i < viejos.size() || j < nuevos.size()) {
+                NodoEmpleado sig;
+                if (j == nuevos.size()) sig = viejos.get(i++);
+                else if (i == viejos.size()) sig = nuevos.get(j++);
+                else {
+                    int cmp = comparar(viejos.get(i).nombre, nuevos.get(j).nombre);
+                    if (cmp < 0) sig = viejos.get(i++);
+                    else if (cmp > 0) sig = nuevos.get(j++);
+                    else {
+                        viejos.get(i).departamento = nuevos.get(j++).departamento;
+                        sig = viejos.get(i++);
+                    }
+                }
+                NodoEmpleado ultimo = mezcla.isEmpty() ? null : mezcla.get(mezcla.size() - 1);
+                if (ultimo != null && comparar(ultimo.nombre, sig.nombre) == 0) ultimo.departamento = sig.departamento;
+                else mezcla.add(sig);
+            }
+            raiz = construir(mezcla, 0, mezcla.size() - 1);
+            size = mezcla.size();
+        }
+
+        // arbol perfectamente balanceado desde una lista ordenada; la recursion solo baja
+        // log2(n) niveles, ahi no hay riesgo de reventar la pila
+        private static NodoEmpleado construir(List<NodoEmpleado> l, int desde, int hasta) {
+            if (desde > hasta) return null;
+            int mid = (desde + hasta) >>> 1;
+            NodoEmpleado n = l.get(mid);
+            n.izq = construir(l, desde, mid - 1);
+            n.der = construir(l, mid + 1, hasta);
+            actualizar(n);
+            return n;
+        }
+
+        void mostrarInOrder() {
+            recorrerDesde(null, n -> {
+                System.out.println("Empleado: " + n.nombre + " (Depto: " + n.departamento + ")");
+                return true;
+            });
+        }
+
+        // inorden iterativo empezando en el primer nombre >= desde; para cuando visitar da false
+        void recorrerDesde(String desde, Predicate<NodoEmpleado> visitar) {
+            ArrayDeque<NodoEmpleado> pila = new ArrayDeque<>();
+            NodoEmpleado actual = raiz;
+            while (actual != null) {
+                if (desde == null || comparar(actual.nombre, desde) >= 0) {
+                    pila.push(actual);
+                    actual = actual.izq;
+                } else actual = actual.der;
+            }
+            while (!pila.isEmpty()) {
+                NodoEmpleado n = pila.pop();
+                if (!visitar.test(n)) return;
+                for (NodoEmpleado m = n.der; m != null; m = m.izq) pila.push(m);
+            }
+        }
+
+        // sube por el camino balanceando y re-enganchando cada subarbol con su padre
+        private void rebalancear(NodoEmpleado[] camino, int n) {
+            for (int i = n - 1; i >= 0; i--) {
+                NodoEmpleado nodo = camino[i];
+                NodoEmpleado nuevo = balancear(nodo);
+                if (i == 0) raiz = nuevo;
+                else if (camino[i - 1].izq == nodo) camino[i - 1].izq = nuevo;
+                else camino[i - 1].der = nuevo;
+            }
+        }
+
+        private NodoEmpleado balancear(NodoEmpleado n) {
+            actualizar(n);
+            int fb = altura(n.izq) - altura(n.der);
+            if (fb > 1) {
+                if (altura(n.izq.izq) < altura(n.izq.der)) n.izq = rotarIzq(n.izq);
+                return rotarDer(n);
+            }
+            if (fb < -1) {
+                if (altura(n.der.der) < altura(n.der.izq)) n.der = rotarDer(n.der);
+                return rotarIzq(n);
+            }
+            return n;
+        }
+
+        private NodoEmpleado rotarDer(NodoEmpleado n) {
+            NodoEmpleado x = n.izq;
+            n.izq = x.der;
+            x.der = n;
+            actualizar(n);
+            actualizar(x);
+            return x;
+        }
+
+        private NodoEmpleado rotarIzq(NodoEmpleado n) {
+            NodoEmpleado x = n.der;
+            n.der = x.izq;
+            x.izq = n;
+            actualizar(n);
+            actualizar(x);
+            return x;
+        }
+
+        private static int altura(NodoEmpleado n) { return n == null ? 0 : n.altura; }
+        private static void actualizar(NodoEmpleado n) { n.altura = 1 + Math.max(altura(n.izq), altura(n.der)); }
+        private static int comparar(String a, String b) { return String.CASE_INSENSITIVE_ORDER.compare(a, b); }
+    }
+
+    // ====== HashMap para tareas y empleados ======
+    // Ademas del hashmap por id lleva indices secundarios (depto, urgencia, fecha y estado)
+    // para que las consultas con filtros no tengan que recorrer todas las tareas, y las mismas
+    // tareas repartidas en Particiones para los reportes que si tienen que verlas todas.
+    static class BaseDatos implements Serializable {
+        private static final long serialVersionUID = 1L;
+        HashMap<Integer, Tarea> tareas = new HashMap<>();
+        // la llave es el nombre tal como lo guardo el arbol: uno por nombre sin importar mayusculas
+        // (ver registrarEmpleado), asi los dos dicen lo mismo
+        HashMap<String, String> empleados = new HashMap<>();
+
+        // indices secundarios: no se guardan, se rehacen al cargar
+        transient HashMap<String, BitSet> porDepto;
+        transient BitSet[] porUrgencia;                 // [1..5] -> ids con esa urgencia
+        transient TreeMap<Long, List<Integer>> porFecha; // fechaEntrega (ms) -> ids
+        transient BitSet pendientes, completadas;
+        transient Particiones particiones;
+
+        BaseDatos() { reconstruirIndices(); }
+
+        public void addTarea(Tarea t) {
+            revisarUrgencia(t.urgencia); // antes de tocar nada: si truena la base queda como estaba
+            Tarea vieja = getTarea(t.id);
+            if (vieja != null) desindexar(vieja);
+            indexar(t);
+        }
+
+        // muchas de golpe: se indexan en orden de fecha, asi porFecha siempre crece por la orilla
+        // del TreeMap (mucho mas barato que meterlas en desorden)
+        void addTodas(Collection<Tarea> nuevas) {
+            Tarea[] orden = nuevas.toArray(new Tarea[0]);
+            GestorOrdenamiento.ordenarParalelo(orden, Comparator.comparingLong(t -> t.fechaEntrega.getTime()));
+            for (Tarea t : orden) addTarea(t);
+        }
+
+        public Tarea removeTarea(int id) {
+            Tarea t = getTarea(id);
+            if (t == null) return null;
+            tareas.remove(id);
+            desindexar(t);
+            return t;
+        }
+
+        public Tarea marcarCompletada(int id) {
+            Tarea t = getTarea(id);
+            if (t == null) return null;
+            t.marcarCompletada();
+            pendientes.clear(id);
+            completadas.set(id);
+            return t;
+        }
+
+        void addEmpleado(String nombre, String depto) { empleados.put(nombre, depto); }
+
+        public Tarea getTarea(int id) { return tareas.get(id); }
+        public int size() { return tareas.size(); }
+        boolean isEmpty() { return tareas.isEmpty(); }
+        public void forEach(Consumer<Tarea> accion) { tareas.values().forEach(accion); }
+        String getEmpleado(String nombre) { return empleados.get(nombre); }
+
+        // copia de la lista, para quien se las va a quedar (cola, gestor, planificador)
+        List<Tarea> todas() {
+            List<Tarea> l = new ArrayList<>(particiones.size());
+            for (int i = 0; i < particiones.numero(); i++) {
+                Particiones.Particion p = particiones.parte(i);
+                for (int j = 0; j < p.size; j++) l.add(p.tareas[j]);
+            }
+            return l;
+        }
+
+        void mostrarTareas() { 
+            if (isEmpty()) {
+                System.out.println("No hay tareas en la base de datos.");
+                return;
+            }
+            forEach(System.out::println); 
+        }
+
+        Consulta consulta() { return new Consulta(this); }
+
+        // ojo: si se cambia urgencia o fecha de una tarea hay que desindexar antes e indexar despues
+        // (tambien reescribe su renglon en el almacen)
+        void indexar(Tarea t) {
+            revisarUrgencia(t.urgencia);
+            tareas.put(t.id, t);
+            porDepto.computeIfAbsent(t.departamento, k -> new BitSet()).set(t.id);
+            porUrgencia[t.urgencia].set(t.id);
+            porFecha.computeIfAbsent(t.fechaEntrega.getTime(), k -> new ArrayList<>(1)).add(t.id);
+            (t.completada ? completadas : pendientes).set(t.id);
+            particiones.poner(t);
+        }
+
+        // porUrgencia solo tiene [1..5]
+        static void revisarUrgencia(int u) {
+            if (u < 1 || u > 5) throw new IllegalArgumentException("urgencia fuera de rango (1-5): " + u);
+        }
+
+        void desindexar(Tarea t) {
+            BitSet d = porDepto.get(t.departamento);
+            if (d != null) {
+                d.clear(t.id);
+                if (d.isEmpty()) porDepto.remove(t.departamento);
+            }
+            porUrgencia[t.urgencia].clear(t.id);
+            List<Integer> mismoDia = porFecha.get(t.fechaEntrega.getTime());
+            if (mismoDia != null) {
+                mismoDia.remove(Integer.valueOf(t.id));
+                if (mismoDia.isEmpty()) porFecha.remove(t.fechaEntrega.getTime());
+            }
+            pendientes.clear(t.id);
+            completadas.clear(t.id);
+            particiones.quitar(t.id);
+        }
+
+        private void reconstruirIndices() {
+            porDepto = new HashMap<>();
+            porUrgencia = new BitSet[6];
+            for (int u = 1; u <= 5; u++) porUrgencia[u] = new BitSet();
+            porFecha = new TreeMap<>();
+            pendientes = new BitSet();
+            completadas = new BitSet();
+            particiones = new Particiones();
+            for (Tarea t : tareas.values()) indexar(t);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            for (Tarea t : tareas.values()) t.urgencia = urgenciaDeDisco(t.urgencia);
+            reconstruirIndices();
+        }
+    }
+
+    // ====== Consultas con filtros sobre los indices ======
+    // Se encadenan filtros y al final se cruzan los BitSet de ids, ej:
+    //   db.consulta().depto("TI").pendientes().urgenciaMin(4).venceEntre(ahora, en48h).ejecutar()
+    // Solo se tocan las tareas que pasan los filtros, no todo el almacen.
+    static class Consulta {
+        private static final int CANDIDATOS_POCOS = 4096; // con menos que esto revisamos fecha una por una
+        private final BaseDatos db;
+        private BitSet ids;        // null = sin filtros de indice todavia (todas)
+        private Long desde, hasta; // rango de fechaEntrega en ms (inclusivo)
+
+        Consulta(BaseDatos db) { this.db = db; }
+
+        Consulta depto(String depto) {
+            return acotar(db.porDepto.getOrDefault(depto, new BitSet()));
+        }
+
+        Consulta urgenciaEntre(int min, int max) {
+            BitSet u = new BitSet();
+            for (int i = Math.max(1, min); i <= Math.min(5, max); i++) u.or(db.porUrgencia[i]);
+            return acotar(u);
+        }
+
+        Consulta urgenciaMin(int min) { return urgenciaEntre(min, 5); }
+        Consulta pendientes() { return acotar(db.pendientes); }
+        Consulta completadas() { return acotar(db.completadas); }
+
+        Consulta venceEntre(Date desde, Date hasta) {
+            this.desde = desde.getTime();
+            this.hasta = hasta.getTime();
+            return this;
+        }
+
+        Consulta venceAntesDe(Date hasta) { return venceEntre(new Date(Long.MIN_VALUE), hasta); }
+
+        // ids que cumplen todo
+        BitSet ids() {
+            if (desde == null) return ids != null ? (BitSet) ids.clone() : todas();
+            BitSet res = new BitSet();
+            if (ids != null && ids.cardinality() < CANDIDATOS_POCOS) {
+                for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                    long f = db.getTarea(id).fechaEntrega.getTime();
+                    if (f >= desde && f <= hasta) res.set(id);
+                }
+                return res;
+            }
+            for (List<Integer> l : db.porFecha.subMap(desde, true, hasta, true).values())
+                for (int id : l) if (ids == null || ids.get(id)) res.set(id);
+            return res;
+        }
+
+        List<Tarea> ejecutar() {
+            BitSet r = ids();
+            List<Tarea> res = new ArrayList<>(r.cardinality());
+            for (int id = r.nextSetBit(0); id >= 0; id = r.nextSetBit(id + 1)) res.add(db.getTarea(id));
+            return res;
+        }
+
+        int contar() { return ids().cardinality(); }
+
+        private Consulta acotar(BitSet filtro) {
+            if (ids == null) ids = (BitSet) filtro.clone();
+            else ids.and(filtro);
+            return this;
+        }
+
+        private BitSet todas() {
+            BitSet b = (BitSet) db.pendientes.clone();
+            b.or(db.completadas);
+            return b;
+        }
+    }
+
+    // ====== Particiones de tareas (para recorrer con todos los nucleos) ======
+    // Las mismas tareas de la base repartidas por hash del id en P pedazos que no comparten nada.
+    // Cada pedazo es un arreglo denso de Tarea con su MapaEnteros id -> posicion (al borrar, la
+    // ultima ocupa el hueco). Recorrer uno es avanzar por un arreglo,
+    // sin brincar entre nodos del HashMap, y cada uno lo puede recorrer un hilo distinto (Reportes).
+    // Los cambios siguen entrando por un solo hilo; en paralelo solo se lee.
+    static class Particiones {
+        // unas 4 por nucleo, para que el fork-join reparta parejo aunque alguna salga mas cargada
+        static final int POR_DEFECTO = Integer.getInteger("tareas.particiones",
+                4 * Runtime.getRuntime().availableProcessors());
+
+        static final class Particion {
+            private final MapaEnteros pos = new MapaEnteros(16);
+            Tarea[] tareas = new Tarea[16]; // [0, size) ocupadas, sin orden
+            int size;
+
+            void poner(Tarea t) {
+                int i = pos.get(t.id, -1);
+                if (i < 0) {
+                    if (size == tareas.length) tareas = Arrays.copyOf(tareas, size * 2);
+                    i = size++;
+                    pos.put(t.id, i);
+                }
+                tareas[i] = t;
+            }
+
+            Tarea get(int id) {
+                int i = pos.get(id, -1);
+                return i < 0 ? null : tareas[i];
+            }
+
+            boolean quitar(int id) {
+                int i = pos.remove(id, -1);
+                if (i < 0) return false;
+                int ultima = --size;
+                if (i != ultima) {
+                    tareas[i] = tareas[ultima];
+                    pos.put(tareas[i].id, i);
+                }
+                tareas[ultima] = null;
+                return true;
+            }
+        }
+
+        private final Particion[] partes;
+        private final int corrimiento;
+
+        Particiones() { this(POR_DEFECTO); }
+
+        // se redondea a potencia de 2 (minimo 2)
+        Particiones(int cuantas) {
+            int bits = 1;
+            while ((1 << bits) < cuantas && bits < 16) bits++;
+            partes = new Particion[1 << bits];
+            for (int i = 0; i < partes.length; i++) partes[i] = new Particion();
+            corrimiento = 32 - bits;
+        }
+
+        void poner(Tarea t) { partes[de(t.id)].poner(t); }
+        Tarea get(int id) { return partes[de(id)].get(id); }
+        boolean quitar(int id) { return partes[de(id)].quitar(id); }
+        int numero() { return partes.length; }
+        Particion parte(int i) { return partes[i]; }
+
+        int size() {
+            int n = 0;
+            for (Particion p : partes) n += p.size;
+            return n;
+        }
+
+        // con los bits altos del hash: los bajos son los que usa el MapaEnteros de cada pedazo,
+        // si fueran los mismos todas las claves de un pedazo caerian en la misma fraccion de su tabla
+        private int de(int id) { return (id * 0x9E3779B9) >>> corrimiento; }
+    }
+
+    // ====== Mapa int -> int sin boxing ======
+    // Direccionamiento abierto con sondeo lineal. Al borrar se recorren los siguientes y se
+    // recolocan (sin lapidas), asi las busquedas nunca se alargan por basura.
+    static class MapaEnteros {
+        private static final int VACIO = Integer.MIN_VALUE; // esa clave no se puede guardar
+        private int[] claves, valores;
+        private int size, mascara;
+
+        MapaEnteros(int capacidad) {
+            int n = 8;
+            while (n < capacidad * 2L) n <<= 1;
+            claves = new int[n];
+            valores = new int[n];
+            Arrays.fill(claves, VACIO);
+            mascara = n - 1;
+        }
+
+        int get(int clave, int porDefecto) {
+            int i = buscar(clave);
+            return claves[i] == VACIO ? porDefecto : valores[i];
+        }
+
+        boolean containsKey(int clave) { return claves[buscar(clave)] != VACIO; }
+
+        void put(int clave, int valor) {
+            if (clave == VACIO) throw new IllegalArgumentException("clave reservada: " + clave);
+            int i = buscar(clave);
+            if (claves[i] == VACIO) {
+                claves[i] = clave;
+                if (++size * 2 > claves.length) {
+                    valores[i] = valor;
+                    crecer();
+                    return;
+                }
+            }
+            valores[i] = valor;
+        }
+
+        int remove(int clave, int porDefecto) {
+            int i = buscar(clave);
+            if (claves[i] == VACIO) return porDefecto;
+            int viejo = valores[i];
+            // los que siguen en el mismo racimo se recorren si su lugar ideal quedo atras
+            int j = i;
+            while (true) {
+                j = (j + 1) & mascara;
+                if (claves[j] == VACIO) break;
+                int ideal = hash(claves[j]) & mascara;
+                boolean seQueda = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+                if (!seQueda) {
+                    claves[i] = claves[j];
+                    valores[i] = valores[j];
+                    i = j;
+                }
+            }
+            claves[i] = VACIO;
+            size--;
+            return viejo;
+        }
+
+        int size() { return size; }
+
+        private int buscar(int clave) {
+            int i = hash(clave) & mascara;
+            while (claves[i] != VACIO && claves[i] != clave) i = (i + 1) & mascara;
+            return i;
+        }
+
+        private void crecer() {
+            int[] k = claves, v = valores;
+            claves = new int[k.length * 2];
+            valores = new int[k.length * 2];
+            Arrays.fill(claves, VACIO);
+            mascara = claves.length - 1;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == VACIO) continue;
+                int j = buscar(k[i]);
+                claves[j] = k[i];
+                valores[j] = v[i];
+            }
+        }
+
+        private static int hash(int k) {
+            int h = k * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // ====== Listas de adyacencia sin boxing ======
+    // nodo -> lista de ints. Cada lista es un int[] que crece al doble; el nodo se ubica con un
+    // MapaEnteros (nodo -> renglon) y los renglones que quedan vacios se reusan. Un nodo sin
+    // valores no ocupa renglon.
+    static class ListasAdyacencia {
+        interface Arista { void ver(int nodo, int valor); }
+
+        private static final int[] VACIA = new int[0];
+        private final MapaEnteros renglonDe = new MapaEnteros(16);
+        private int[][] listas = new int[16][];
+        private int[] tam = new int[16], nodoDe = new int[16];
+        private int[] libres = new int[16];
+        private int numLibres, usados, total;
+
+        // false si ya estaba
+        boolean agregar(int nodo, int valor) {
+            int r = renglonDe.get(nodo, -1);
+            if (r < 0) r = nuevoRenglon(nodo);
+            else if (indice(r, valor) >= 0) return false;
+            anexar(r, valor);
+            return true;
+        }
+
+        // de golpe y sin revisar repetidos (al cargar datos que ya vienen limpios)
+        void cargar(int nodo, int[] valores, int desde, int hasta) {
+            if (desde >= hasta) return;
+            int r = renglonDe.get(nodo, -1);
+            if (r < 0) r = nuevoRenglon(nodo);
+            for (int i = desde; i < hasta; i++) anexar(r, valores[i]);
+        }
+
+        boolean quitar(int nodo, int valor) {
+            int r = renglonDe.get(nodo, -1);
+            if (r < 0) return false;
+            int i = indice(r, valor);
+            if (i < 0) return false;
+            System.arraycopy(listas[r], i + 1, listas[r], i, tam[r] - i - 1); // sin cambiar el orden
+            total--;
+            if (--tam[r] == 0) liberar(nodo, r);
+            return true;
+        }
+
+        // quita el nodo con todo y su lista; regresa lo que tenia
+        int[] quitarNodo(int nodo) {
+            int r = renglonDe.get(nodo, -1);
+            if (r < 0) return VACIA;
+            int[] l = Arrays.copyOf(listas[r], tam[r]);
+            total -= tam[r];
+            liberar(nodo, r);
+            return l;
+        }
+
+        boolean contiene(int nodo, int valor) {
+            int r = renglonDe.get(nodo, -1);
+            return r >= 0 && indice(r, valor) >= 0;
+        }
+
+        int grado(int nodo) {
+            int r = renglonDe.get(nodo, -1);
+            return r < 0 ? 0 : tam[r];
+        }
+
+        // el arreglo interno (solo valen las primeras grado(nodo) posiciones): para recorrer sin copiar
+        int[] crudo(int nodo) {
+            int r = renglonDe.get(nodo, -1);
+            return r < 0 ? VACIA : listas[r];
+        }
+
+        int[] de(int nodo) {
+            int r = renglonDe.get(nodo, -1);
+            return r < 0 ? VACIA : Arrays.copyOf(listas[r], tam[r]);
+        }
+
+        int numNodos() { return renglonDe.size(); }
+        int total() { return total; }
+
+        void paraCada(Arista a) {
+            for (int r = 0; r < usados; r++)
+                for (int i = 0; i < tam[r]; i++) a.ver(nodoDe[r], listas[r][i]);
+        }
+
+        int[] nodos() {
+            int[] res = new int[numNodos()];
+            int k = 0;
+            for (int r = 0; r < usados; r++) if (tam[r] > 0) res[k++] = nodoDe[r];
+            return res;
+        }
+
+        private int nuevoRenglon(int nodo) {
+            int r;
+            if (numLibres > 0) r = libres[--numLibres];
+            else {
+                if (usados == listas.length) {
+                    int cap = usados * 2;
+                    listas = Arrays.copyOf(listas, cap);
+                    tam = Arrays.copyOf(tam, cap);
+                    nodoDe = Arrays.copyOf(nodoDe, cap);
+                }
+                r = usados++;
+            }
+            listas[r] = new int[2];
+            nodoDe[r] = nodo;
+            renglonDe.put(nodo, r);
+            return r;
+        }
+
+        private void anexar(int r, int valor) {
+            if (tam[r] == listas[r].length) listas[r] = Arrays.copyOf(listas[r], tam[r] * 2);
+            listas[r][tam[r]++] = valor;
+            total++;
+        }
+
+        private void liberar(int nodo, int r) {
+            renglonDe.remove(nodo, -1);
+            listas[r] = null;
+            tam[r] = 0;
+            if (numLibres == libres.length) libres = Arrays.copyOf(libres, numLibres * 2);
+            libres[numLibres++] = r;
+        }
+
+        private int indice(int r, int valor) {
+            int[] l = listas[r];
+            for (int i = 0; i < tam[r]; i++) if (l[i] == valor) return i;
+            return -1;
+        }
+    }
+
+    // ====== Gestor de ordenamiento y búsqueda ======
+    // Aqui aplicamos "divide y vencerás" con búsqueda binaria y ordenamientos.
+    // Ya no se ordena en cada consulta: se guardan tres vistas ordenadas (id, urgencia, fecha)
+    // y cada alta/baja se parcha con busqueda binaria en su lugar, sin reordenar todo.
+    static class GestorOrdenamiento {
+        enum Orden { ID, URGENCIA, FECHA }
+
+        // el desempate por id hace que cada tarea tenga una sola posicion posible
+        static final Comparator<Tarea> POR_ID = Comparator.comparingInt(t -> t.id);
+        static final Comparator<Tarea> POR_URGENCIA = (a, b) -> {
+            // Orden descendente por urgencia (5 -> 1)
+            int cmp = Integer.compare(b.urgencia, a.urgencia);
+            return cmp != 0 ? cmp : Integer.compare(a.id, b.id);
+        };
+        static final Comparator<Tarea> POR_FECHA = (a, b) -> {
+            // Orden ascendente por fecha (antes primero)
+            int cmp = a.fechaEntrega.compareTo(b.fechaEntrega);
+            return cmp != 0 ? cmp : Integer.compare(a.id, b.id);
+        };
+
+        ArrayList<Tarea> porId = new ArrayList<>();
+        ArrayList<Tarea> porUrgencia = new ArrayList<>();
+        ArrayList<Tarea> porFecha = new ArrayList<>();
+
+        GestorOrdenamiento() { }
+
+        GestorOrdenamiento(Collection<Tarea> tareas) { reconstruir(tareas); }
+
+        // orden completo de una vez (al cargar de disco), con el merge sort paralelo
+        void reconstruir(Collection<Tarea> tareas) {
+            Tarea[] base = tareas.toArray(new Tarea[0]);
+            porId = ordenada(base, POR_ID);
+            porUrgencia = ordenada(base, POR_URGENCIA);
+            porFecha = ordenada(base, POR_FECHA);
+        }
+
+        private static ArrayList<Tarea> ordenada(Tarea[] base, Comparator<Tarea> cmp) {
+            Tarea[] a = base.clone();
+            ordenarParalelo(a, cmp);
+            return new ArrayList<>(Arrays.asList(a));
+        }
+
+        void agregar(Tarea t) {
+            insertarOrdenado(porId, t, POR_ID);
+            insertarOrdenado(porUrgencia, t, POR_URGENCIA);
+            insertarOrdenado(porFecha, t, POR_FECHA);
+        }
+
+        // ojo: llamar antes de cambiarle urgencia o fecha, si no ya no se encuentra
+        void quitar(Tarea t) {
+            quitarOrdenado(porId, t, POR_ID);
+            quitarOrdenado(porUrgencia, t, POR_URGENCIA);
+            quitarOrdenado(porFecha, t, POR_FECHA);
+        }
+
+        // búsqueda binaria por id (divide y vencerás), la lista ya esta ordenada
+        Tarea buscarPorID(int id) {
+            int izq = 0, der = porId.size() - 1;
+            while (izq <= der) {
+                int mid = (izq + der) >>> 1;
+                if (porId.get(mid).id == id) return porId.get(mid);
+                if (porId.get(mid).id < id) izq = mid + 1;
+                else der = mid - 1;
+            }
+            return null;
+        }
+
+        // una pagina de la vista (sin copiar): offset desde 0
+        List<Tarea> pagina(Orden orden, int offset, int limit) {
+            List<Tarea> vista = vista(orden);
+            int desde = Math.min(Math.max(0, offset), vista.size());
+            int hasta = (int) Math.min((long) desde + Math.max(0, limit), vista.size());
+            return Collections.unmodifiableList(vista.subList(desde, hasta));
+        }
+
+        int size() { return porId.size(); }
+
+        void mostrar(Orden orden, int offset, int limit) { 
+            if (porId.isEmpty()) {
+                System.out.println("lista vacia.");
+                return;
+            }
+            pagina(orden, offset, limit).forEach(System.out::println); 
+        }
+
+        private List<Tarea> vista(Orden orden) {
+            switch (orden) {
+                case URGENCIA: return porUrgencia;
+                case FECHA: return porFecha;
+                default: return porId;
+            }
+        }
+
+        private static void insertarOrdenado(ArrayList<Tarea> l, Tarea t, Comparator<Tarea> cmp) {
+            int i = Collections.binarySearch(l, t, cmp);
+            if (i >= 0) return; // ya estaba
+            l.add(-i - 1, t);
+        }
+
+        private static void quitarOrdenado(ArrayList<Tarea> l, Tarea t, Comparator<Tarea> cmp) {
+            int i = Collections.binarySearch(l, t, cmp);
+            if (i >= 0) l.remove(i);
+        }
+
+        // ---- merge sort paralelo (divide y venceras con fork-join) ----
+        // Se parte en unos 4 pedazos por nucleo que ordena Arrays.sort (TimSort, que aprovecha lo
+        // que ya viene en orden) y luego se mezclan de dos en dos. La mezcla tambien se parte: se
+        // toma la mitad de la corrida mas larga, se busca (binaria) donde cae en la otra y cada
+        // lado se mezcla aparte, asi ni la ultima mezcla de 10M se queda en un solo nucleo. Los
+        // niveles van alternando entre el arreglo y un auxiliar para no copiar de regreso. Estable.
+        static final int UMBRAL_PARALELO = 1 << 13; // abajo de esto, Arrays.sort / mezcla normal
+
+        static <T> void ordenarParalelo(T[] a, Comparator<? super T> cmp) {
+            // cuenta el pool donde va a correr invoke() (el nuestro si ya estamos en uno, si no el
+            // comun), no los nucleos de la maquina: un pool de 1 hilo no tiene nada que repartir
+            ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+            int hilos = pool.getParallelism();
+            if (a.length <= UMBRAL_PARALELO || hilos == 1) {
+                Arrays.sort(a, cmp);
+                return;
+            }
+            int hoja = Math.max(UMBRAL_PARALELO, a.length / (4 * hilos));
+            // invoke() reparte en el pool donde ya estemos corriendo, o en el comun
+            new OrdenParalelo<>(a, a.clone(), 0, a.length, true, hoja, cmp).invoke();
+        }
+
+        // ordena a[desde, hasta) y deja el resultado en a (enA) o en aux; lo de a en ese rango
+        // nadie mas lo toca hasta que la tarea lo lee
+        private static final class OrdenParalelo<T> extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final T[] a, aux;
+            private final int desde, hasta, hoja;
+            private final boolean enA;
+            private final Comparator<? super T> cmp;
+
+            OrdenParalelo(T[] a, T[] aux, int desde, int hasta, boolean enA, int hoja, Comparator<? super T> cmp) {
+                this.a = a;
+                this.aux = aux;
+                this.desde = desde;
+                this.hasta = hasta;
+                this.enA = enA;
+                this.hoja = hoja;
+                this.cmp = cmp;
+            }
+
+            @Override
+            protected void compute() {
+                if (hasta - desde <= hoja) {
+                    Arrays.sort(a, desde, hasta, cmp);
+                    if (!enA) System.arraycopy(a, desde, aux, desde, hasta - desde);
+                    return;
+                }
+                int mitad = (desde + hasta) >>> 1;
+                // las mitades dejan su resultado en el otro arreglo y de ahi se mezclan al nuestro
+                invokeAll(new OrdenParalelo<>(a, aux, desde, mitad, !enA, hoja, cmp),
+                          new OrdenParalelo<>(a, aux, mitad, hasta, !enA, hoja, cmp));
+                T[] src = enA ? aux : a, dst = enA ? a : aux;
+                // si ya venian en orden (tipico al cargar: el HashMap sale casi por id) basta copiar
+                if (cmp.compare(src[mitad - 1], src[mitad]) <= 0) System.arraycopy(src, desde, dst, desde, hasta - desde);
+                else new MezclaParalela<>(src, desde, mitad, mitad, hasta, dst, desde, cmp).compute();
+            }
+        }
+
+        // mezcla src[i1, f1) y src[i2, f2) (cada una ordenada) en dst a partir de 'en'
+        private static final class MezclaParalela<T> extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final T[] src, dst;
+            private final int i1, f1, i2, f2, en;
+            private final Comparator<? super T> cmp;
+
+            MezclaParalela(T[] src, int i1, int f1, int i2, int f2, T[] dst, int en, Comparator<? super T> cmp) {
+                this.src = src;
+                this.i1 = i1;
+                this.f1 = f1;
+                this.i2 = i2;
+                this.f2 = f2;
+                this.dst = dst;
+                this.en = en;
+                this.cmp = cmp;
+            }
+
+            @Override
+            protected void compute() {
+                if ((f1 - i1) + (f2 - i2) <= UMBRAL_PARALELO) {
+                    int i = i1, j = i2, k = en;
+                    while (i < f1 && j < f2) dst[k++] = cmp.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+                    System.arraycopy(src, i, dst, k, f1 - i);
+                    System.arraycopy(src, j, dst, k + (f1 - i), f2 - j);
+                    return;
+                }
+                // en empates la de la izquierda va primero (por eso una busqueda es < y la otra <=)
+                int m1, m2;
+                T pivote;
+                if (f1 - i1 >= f2 - i2) {
+                    m1 = (i1 + f1) >>> 1;
+                    pivote = src[m1];
+                    m2 = primeroQue(src, i2, f2, pivote, false);
+                    dst[en + (m1 - i1) + (m2 - i2)] = pivote;
+                    invokeAll(new MezclaParalela<>(src, i1, m1, i2, m2, dst, en, cmp),
+                              new MezclaParalela<>(src, m1 + 1, f1, m2, f2, dst, en + (m1 - i1) + (m2 - i2) + 1, cmp));
+                } else {
+                    m2 = (i2 + f2) >>> 1;
+                    pivote = src[m2];
+                    m1 = primeroQue(src, i1, f1, pivote, true);
+                    dst[en + (m1 - i1) + (m2 - i2)] = pivote;
+                    invokeAll(new MezclaParalela<>(src, i1, m1, i2, m2, dst, en, cmp),
+                              new MezclaParalela<>(src, m1, f1, m2 + 1, f2, dst, en + (m1 - i1) + (m2 - i2) + 1, cmp));
+                }
+            }
+
+            // primer indice en [desde, hasta) con src[i] > x (estricto) o >= x
+            private int primeroQue(T[] src, int desde, int hasta, T x, boolean estricto) {
+                while (desde < hasta) {
+                    int m = (desde + hasta) >>> 1;
+                    int c = cmp.compare(src[m], x);
+                    if (estricto ? c <= 0 : c < 0) desde = m + 1;
+                    else hasta = m;
+                }
+                return desde;
+            }
+        }
+    }
+
+    // ====== Reportes en paralelo ======
+    // Cuentas por depto y urgencia, cuantas pendientes ya vencieron y listados ordenados, sobre
+    // TODAS las tareas. Cada particion de la base la resume un hilo del fork-join comun (parallel
+    // stream) con su propio mapa, y al final se juntan los parciales: a 10M tareas se usan todos
+    // los nucleos. Se llama desde el hilo que hace los cambios (menu o motor del servidor), asi
+    // mientras corre nadie modifica la base.
+    static class Reportes {
+        static final class Fila {
+            final String depto;
+            final long[] pendientes = new long[6], completadas = new long[6]; // [1..5] por urgencia
+            long vencidas; // pendientes con fecha ya pasada
+
+            Fila(String depto) { this.depto = depto; }
+
+            long pendientes() { return Arrays.stream(pendientes).sum(); }
+            long completadas() { return Arrays.stream(completadas).sum(); }
+            long total() { return pendientes() + completadas(); }
+
+            // de las pendientes, que fraccion ya vencio
+            double proporcionVencidas() {
+                long p = pendientes();
+                return p == 0 ? 0 : (double) vencidas / p;
+            }
+
+            void juntar(Fila o) {
+                for (int u = 1; u <= 5; u++) {
+                    pendientes[u] += o.pendientes[u];
+                    completadas[u] += o.completadas[u];
+                }
+                vencidas += o.vencidas;
+            }
+        }
+
+        static final class Resumen {
+            final TreeMap<String, Fila> porDepto = new TreeMap<>();
+            final Fila total = new Fila("TOTAL");
+        }
+
+        static Resumen resumir(BaseDatos db, long ahoraMs) {
+            Particiones p = db.particiones;
+            HashMap<String, Fila> junto = IntStream.range(0, p.numero()).parallel()
+                    .mapToObj(i -> resumir(p.parte(i), ahoraMs))
+                    .reduce(Reportes::juntar).orElseGet(HashMap::new);
+            Resumen r = new Resumen();
+            for (Fila f : junto.values()) {
+                r.porDepto.put(f.depto, f);
+                r.total.juntar(f);
+            }
+            return r;
+        }
+
+        // las que cumplen el filtro, ya ordenadas: se filtra cada particion en paralelo, se pegan
+        // los pedazos y se ordena con el merge sort paralelo del gestor
+        static List<Tarea> ordenadas(BaseDatos db, Predicate<Tarea> filtro, Comparator<Tarea> orden) {
+            Particiones p = db.particiones;
+            Tarea[][] pedazos = IntStream.range(0, p.numero()).parallel()
+                    .mapToObj(i -> filtrar(p.parte(i), filtro)).toArray(Tarea[][]::new);
+            int n = 0;
+            for (Tarea[] t : pedazos) n += t.length;
+            Tarea[] res = new Tarea[n];
+            int k = 0;
+            for (Tarea[] t : pedazos) {
+                System.arraycopy(t, 0, res, k, t.length);
+                k += t.length;
+            }
+            GestorOrdenamiento.ordenarParalelo(res, orden);
+            return Arrays.asList(res);
+        }
+
+        private static HashMap<String, Fila> resumir(Particiones.Particion p, long ahoraMs) {
+            HashMap<String, Fila> m = new HashMap<>();
+            String ultimo = null; // casi siempre es el mismo objeto String, nos ahorramos el get
+            Fila fila = null;
+            Tarea[] ts = p.tareas;
+            for (int i = 0, n = p.size; i < n; i++) {
+                Tarea t = ts[i];
+                if (t.departamento != ultimo) {
+                    ultimo = t.departamento;
+                    fila = m.computeIfAbsent(ultimo, Fila::new);
+                }
+                if (t.completada) {
+                    fila.completadas[t.urgencia]++;
+                } else {
+                    fila.pendientes[t.urgencia]++;
+                    if (t.fechaEntrega.getTime() < ahoraMs) fila.vencidas++;
+                }
+            }
+            return m;
+        }
+
+        private static Tarea[] filtrar(Particiones.Particion p, Predicate<Tarea> filtro) {
+            Tarea[] res = new Tarea[p.size];
+            int k = 0;
+            for (int i = 0; i < p.size; i++) if (filtro.test(p.tareas[i])) res[k++] = p.tareas[i];
+            return k == res.length ? res : Arrays.copyOf(res, k);
+        }
+
+        // el mas chico se vacia en el mas grande
+        private static HashMap<String, Fila> juntar(HashMap<String, Fila> a, HashMap<String, Fila> b) {
+            if (a.size() < b.size()) return juntar(b, a);
+            for (Fila f : b.values()) {
+                Fila ya = a.putIfAbsent(f.depto, f);
+                if (ya != null) ya.juntar(f);
+            }
+            return a;
+        }
+    }
+
+    // ====== Indice de texto (busqueda por palabras en titulo y depto) ======
+    // Indice invertido: cada palabra -> lista de ids de las tareas que la traen. Las palabras se
+    // normalizan (minusculas y sin acentos: "Diseñar" y "disenar" son la misma) y se guardan en un
+    // TreeMap, asi los prefijos son un subMap. Cada lista va comprimida: ids en orden creciente
+    // guardados como diferencias en varint (1-2 bytes por id casi siempre) junto con cuantas veces
+    // sale la palabra. Borrar solo marca el id; cuando lo borrado pesa mucho se reescriben las listas.
+    // Los resultados se ordenan con BM25 (palabras raras y titulos cortos pesan mas).
+    static class IndiceTexto {
+        private static final float K1 = 1.2f, B = 0.75f;
+        private static final float PESO_PREFIJO = 0.8f, PESO_DIFUSO = 0.6f;
+
+        interface Visita { void ver(int id, int frec); }
+
+        // lista de ids comprimida: [delta varint][frecuencia varint]...
+        static final class Lista {
+            byte[] datos = new byte[8];
+            int bytes, ultimo, n;
+
+            void agregar(int id, int frec) {
+                if (n > 0 && id <= ultimo) {
+                    insertarEnDesorden(id, frec);
+                    return;
+                }
+                if (bytes + 10 > datos.length) datos = Arrays.copyOf(datos, datos.length * 2);
+                bytes = escribir(datos, bytes, id - ultimo);
+                bytes = escribir(datos, bytes, frec);
+                ultimo = id;
+                n++;
+            }
+
+            void recorrer(Visita v) {
+                int p = 0, id = 0;
+                while (p < bytes) {
+                    int delta = 0, frec = 0, s = 0;
+                    byte b;
+                    do {
+                        b = datos[p++];
+                        delta |= (b & 0x7F) << s;
+                        s += 7;
+                    } while (b < 0);
+                    s = 0;
+                    do {
+                        b = datos[p++];
+                        frec |= (b & 0x7F) << s;
+                        s += 7;
+                    } while (b < 0);
+                    id += delta;
+                    v.ver(id, frec);
+                }
+            }
+
+            // ids que llegan fuera de orden (importar con ids viejos): se rehace la lista, es raro
+            private void insertarEnDesorden(int id, int frec) {
+                int[] ids = new int[n + 1], frecs = new int[n + 1];
+                int[] k = {0};
+                recorrer((x, f) -> { ids[k[0]] = x; frecs[k[0]++] = f; });
+                int i = Arrays.binarySearch(ids, 0, n, id);
+                if (i >= 0) frecs[i] = frec; // ya estaba: solo cambia la frecuencia
+                int donde = i >= 0 ? -1 : -i - 1;
+                Lista nueva = new Lista();
+                for (int j = 0; j < n; j++) {
+                    if (j == donde) nueva.agregar(id, frec);
+                    nueva.agregar(ids[j], frecs[j]);
+                }
+                if (donde == n) nueva.agregar(id, frec);
+                datos = nueva.datos;
+                bytes = nueva.bytes;
+                ultimo = nueva.ultimo;
+                n = nueva.n;
+            }
+
+            private static int escribir(byte[] d, int p, int v) {
+                while ((v & ~0x7F) != 0) {
+                    d[p++] = (byte) ((v & 0x7F) | 0x80);
+                    v >>>= 7;
+                }
+                d[p++] = (byte) v;
+                return p;
+            }
+        }
+
+        static final class Resultado {
+            final int id;
+            final float puntaje;
+
+            Resultado(int id, float puntaje) {
+                this.id = id;
+                this.puntaje = puntaje;
+            }
+        }
+
+        private final TreeMap<String, Lista> terminos = new TreeMap<>();
+        private final BitSet borradas = new BitSet();
+        private int numBorradas, vivas;
+        private long palabras; // suma de largos, para el largo promedio
+        // arreglos por id (crecen con el id mas alto): cuantas palabras trae (0 = no esta) y los
+        // puntajes que se reusan entre busquedas. "visto" dice en que ronda (palabra de la consulta)
+        // cayo el id por ultima vez, asi no hay que limpiarlos
+        private int[] largo = new int[0], visto = new int[0];
+        private float[] parcial = new float[0], acumulado = new float[0];
+        private int ronda;
+
+        void agregar(int id, String titulo, String depto) {
+            quitar(id);
+            if (borradas.get(id)) compactar(); // si no, las palabras viejas de ese id revivirian
+            HashMap<String, Integer> frec = new HashMap<>();
+            int total = 0;
+            for (String s : tokens(titulo)) { frec.merge(s, 1, Integer::sum); total++; }
+            for (String s : tokens(depto)) { frec.merge(s, 1, Integer::sum); total++; }
+            if (total == 0) return;
+            for (Map.Entry<String, Integer> e : frec.entrySet())
+                terminos.computeIfAbsent(e.getKey(), k -> new Lista()).agregar(id, e.getValue());
+            if (id >= largo.length) crecer(Math.max(id + 1, largo.length * 2));
+            largo[id] = total;
+            palabras += total;
+            vivas++;
+        }
+
+        void quitar(int id) {
+            if (id >= largo.length || largo[id] == 0) return;
+            palabras -= largo[id];
+            largo[id] = 0;
+            vivas--;
+            borradas.set(id);
+            // las listas se limpian cuando lo borrado ya es mas que lo vivo
+            if (++numBorradas > 1024 && numBorradas > vivas) compactar();
+        }
+
+        // desde cero, en orden de id para que todas las listas se escriban solo hacia adelante
+        void reconstruir(Collection<Tarea> tareas) {
+            terminos.clear();
+            borradas.clear();
+            numBorradas = 0;
+            palabras = 0;
+            vivas = 0;
+            Tarea[] orden = tareas.toArray(new Tarea[0]);
+            Arrays.sort(orden, Comparator.comparingInt(t -> t.id));
+            largo = new int[0];
+            crecer(orden.length == 0 ? 0 : orden[orden.length - 1].id + 1);
+            for (Tarea t : orden) agregar(t.id, t.titulo, t.departamento);
+        }
+
+        int size() { return vivas; }
+        int numTerminos() { return terminos.size(); }
+
+        // Todas las palabras de la consulta tienen que aparecer (en el titulo o el depto). La ultima
+        // tambien vale como prefijo ("audi" encuentra "Auditoria"); con difuso, una palabra que no
+        // esta se cambia por las que estan a 1-2 letras de distancia.
+        List<Resultado> buscar(String consulta, int limite, boolean difuso) {
+            List<String> qs = tokens(consulta);
+            if (qs.isEmpty() || vivas == 0) return Collections.emptyList();
+            // por cada palabra de la consulta: terminos del indice que cuentan y con que peso
+            List<Map<String, Float>> expansiones = new ArrayList<>();
+            for (int i = 0; i < qs.size(); i++) {
+                Map<String, Float> ex = expandir(qs.get(i), i == qs.size() - 1, difuso);
+                if (ex.isEmpty()) return Collections.emptyList();
+                expansiones.add(ex);
+            }
+            // primero la palabra con menos ids: las demas solo filtran a esos candidatos
+            expansiones.sort(Comparator.comparingLong(this::cuantos));
+            float promedio = (float) palabras / vivas;
+            int[] candidatos = null;
+            int numCandidatos = 0;
+            for (Map<String, Float> ex : expansiones) {
+                int r = ++ronda, antes = r - 1;
+                boolean primera = candidatos == null;
+                int[] nuevos = new int[16];
+                int[] n = {0};
+                for (Map.Entry<String, Float> e : ex.entrySet()) {
+                    Lista l = terminos.get(e.getKey());
+                    float idf = (float) Math.log(1 + (vivas - l.n + 0.5) / (l.n + 0.5));
+                    float peso = idf * e.getValue();
+                    int[][] lista = {nuevos};
+                    l.recorrer((id, f) -> {
+                        if (largo[id] == 0 || (!primera && visto[id] != antes && visto[id] != r)) return;
+                        float norm = K1 * (1 - B + B * largo[id] / promedio);
+                        float p = peso * f * (K1 + 1) / (f + norm);
+                        if (visto[id] == r) {
+                            // la palabra llego por dos caminos (exacta y prefijo): cuenta la mejor
+                            parcial[id] = Math.max(parcial[id], p);
+                            return;
+                        }
+                        if (primera) acumulado[id] = 0;
+                        visto[id] = r;
+                        parcial[id] = p;
+                        if (n[0] == lista[0].length) lista[0] = Arrays.copyOf(lista[0], n[0] * 2);
+                        lista[0][n[0]++] = id;
+                    });
+                    nuevos = lista[0];
+                }
+                for (int i = 0; i < n[0]; i++) acumulado[nuevos[i]] += parcial[nuevos[i]];
+                candidatos = nuevos;
+                numCandidatos = n[0];
+                if (numCandidatos == 0) return Collections.emptyList();
+            }
+            // los k mejores con un heap de tamaño k (el peor arriba); solo se crea Resultado si entra
+            Comparator<Resultado> orden = (x, y) -> x.puntaje != y.puntaje
+                    ? Float.compare(y.puntaje, x.puntaje) : Integer.compare(x.id, y.id);
+            PriorityQueue<Resultado> mejores = new PriorityQueue<>(orden.reversed());
+            for (int i = 0; i < numCandidatos; i++) {
+                int id = candidatos[i];
+                float p = acumulado[id];
+                if (mejores.size() == limite) {
+                    Resultado peor = mejores.peek();
+                    if (p < peor.puntaje || (p == peor.puntaje && id > peor.id)) continue;
+                    mejores.poll();
+                }
+                mejores.add(new Resultado(id, p));
+            }
+            List<Resultado> res = new ArrayList<>(mejores);
+            res.sort(orden);
+            return res;
+        }
+
+        private long cuantos(Map<String, Float> ex) {
+            long n = 0;
+            for (String s : ex.keySet()) n += terminos.get(s).n;
+            return n;
+        }
+
+        private Map<String, Float> expandir(String q, boolean prefijo, boolean difuso) {
+            HashMap<String, Float> ex = new HashMap<>();
+            if (terminos.containsKey(q)) ex.put(q, 1f);
+            if (prefijo)
+                for (String s : terminos.subMap(q, false, q + Character.MAX_VALUE, false).keySet()) ex.put(s, PESO_PREFIJO);
+            if (difuso && ex.isEmpty()) {
+                int k = q.length() <= 4 ? 1 : 2;
+                for (String s : terminos.keySet())
+                    if (Math.abs(s.length() - q.length()) <= k && distancia(q, s, k) <= k) ex.put(s, PESO_DIFUSO);
+            }
+            return ex;
+        }
+
+        private void crecer(int cap) {
+            largo = Arrays.copyOf(largo, cap);
+            visto = Arrays.copyOf(visto, cap);
+            parcial = Arrays.copyOf(parcial, cap);
+            acumulado = Arrays.copyOf(acumulado, cap);
+        }
+
+        // reescribe las listas sin los ids borrados
+        private void compactar() {
+            Iterator<Map.Entry<String, Lista>> it = terminos.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Lista> e = it.next();
+                Lista limpia = new Lista();
+                e.getValue().recorrer((id, f) -> { if (!borradas.get(id)) limpia.agregar(id, f); });
+                if (limpia.n == 0) it.remove();
+                else e.setValue(limpia);
+            }
+            borradas.clear();
+            numBorradas = 0;
+        }
+
+        // minusculas, sin acentos ni diéresis (la ñ queda como n), cortando en lo que no sea letra o numero
+        static List<String> tokens(String s) {
+            List<String> res = new ArrayList<>();
+            if (s == null) return res;
+            // casi todos los titulos son ASCII puro y ahi no hay acentos que quitar
+            String norm = s.chars().allMatch(c -> c < 0x80) ? s : Normalizer.normalize(s, Normalizer.Form.NFD);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < norm.length(); i++) {
+                char c = norm.charAt(i);
+                if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+                if (Character.isLetterOrDigit(c)) sb.append(Character.toLowerCase(c));
+                else if (sb.length() > 0) {
+                    res.add(sb.toString());
+                    sb.setLength(0);
+                }
+            }
+            if (sb.length() > 0) res.add(sb.toString());
+            return res;
+        }
+
+        // Levenshtein con corte: en cuanto toda una fila pasa de k ya no puede bajar
+        static int distancia(String a, String b, int k) {
+            int[] prev = new int[b.length() + 1], cur = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) prev[j] = j;
+            for (int i = 1; i <= a.length(); i++) {
+                cur[0] = i;
+                int min = i;
+                for (int j = 1; j <= b.length(); j++) {
+                    int c = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + c);
+                    min = Math.min(min, cur[j]);
+                }
+                if (min > k) return k + 1;
+                int[] t = prev; prev = cur; cur = t;
+            }
+            return prev[b.length()];
+        }
+    }
+
+    // ====== Grafo de dependencias ======
+    // Representa dependencias: si A depende de B, entonces no hacer A hasta B.
+    // Ademas mantiene un orden topologico incremental (Pearce-Kelly): cada tarea tiene una
+    // posicion y los requisitos siempre quedan antes. Al meter una arista que rompe el orden
+    // solo se revisa la zona entre las dos posiciones, y si ahi se cierra un ciclo se rechaza.
+    // Las aristas van en dos ListasAdyacencia (hacia los requisitos y hacia los dependientes),
+    // asi borrar una tarea solo toca las listas de sus vecinas.
+    static class GrafoDependencias implements Serializable {
+        private static final long serialVersionUID = 1L;
+        // en disco se sigue viendo como antes (un Map<Integer, List<Integer>> llamado adj),
+        // asi los tareas_grafo.ser viejos se siguen pudiendo leer
+        private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("adj", Map.class)};
+        private static final int MAX_MEMO = 64; // alcances guardados por direccion
+
+        transient ListasAdyacencia adj; // A -> requisitos de A
+        // indices derivados: no se guardan, se rehacen al cargar
+        transient ListasAdyacencia inv;               // B -> tareas que dependen de B
+        transient HashMap<Integer, Integer> ord;      // tarea -> posicion en el orden
+        transient TreeMap<Integer, Integer> porOrden; // posicion -> tarea
+        transient int minOrden, maxOrden, aristas;
+        // alcances ya calculados (tarea -> BitSet), se tiran solo los que un cambio puede tocar
+        private transient LinkedHashMap<Integer, BitSet> memoRequisitos, memoBloqueadas;
+
+        GrafoDependencias() {
+            adj = new ListasAdyacencia();
+            iniciarIndices();
+        }
+
+        // A depende de B. Regresa false si la arista cerraria un ciclo.
+        boolean addDep(int tareaA, int tareaB) {
+            if (tareaA == tareaB) return false;
+            if (adj.contiene(tareaA, tareaB)) return true; // ya estaba
+            boolean nuevaA = !ord.containsKey(tareaA), nuevaB = !ord.containsKey(tareaB);
+            // un nodo nuevo no tiene aristas, asi que solo puede haber ciclo si ya estaban los dos
+            if (!nuevaA && !nuevaB && ord.get(tareaB) > ord.get(tareaA) && !reordenar(tareaA, tareaB)) return false;
+            // ya aceptada: el requisito nuevo va al principio y el dependiente nuevo al final, asi no
+            // estorban (antes de aceptar no se les da posicion: un rechazo no deja nada en ord)
+            if (nuevaB) asignarOrden(tareaB, --minOrden);
+            if (nuevaA) asignarOrden(tareaA, ++maxOrden);
+            adj.agregar(tareaA, tareaB);
+            inv.agregar(tareaB, tareaA);
+            aristas++;
+            // A (y quien espera a A) ahora necesita mas; B (y sus requisitos) bloquean a mas
+            olvidar(memoRequisitos, tareaA);
+            olvidar(memoBloqueadas, tareaB);
+            return true;
+        }
+
+        // quita la tarea y solo las aristas que la tocan (usando el indice inverso)
+        void eliminarNodo(int id) {
+            int[] deps = adj.quitarNodo(id);
+            aristas -= deps.length;
+            for (int b : deps) inv.quitar(b, id);
+            int[] quienes = inv.quitarNodo(id);
+            aristas -= quienes.length;
+            for (int c : quienes) adj.quitar(c, id);
+            Integer o = ord.remove(id);
+            if (o != null) porOrden.remove(o);
+            olvidar(memoRequisitos, id);
+            olvidar(memoBloqueadas, id);
+        }
+
+        void mostrar(IntFunction<Tarea> tareas) {
+            if (adj.numNodos() == 0) {
+                System.out.println("No hay dependencias registradas.");
+                return;
+            }
+            adj.paraCada((origenId, dep) -> {
+                Tarea origenT = tareas.apply(origenId);
+                String origen = origenT != null ? origenT.titulo : ("ID " + origenId);
+                Tarea destinoT = tareas.apply(dep);
+                String destino = destinoT != null ? destinoT.titulo : ("ID " + dep);
+                System.out.println("La tarea [" + origen + "] depende de [" + destino + "]");
+            });
+        }
+
+        // util: obtener lista de dependencias de una tarea
+        int[] getDeps(int tareaId) { return adj.de(tareaId); }
+
+        // cuantas tareas esperan directamente a esta
+        int numDependientes(int tareaId) { return inv.grado(tareaId); }
+
+        // todas las aristas (A depende de B), sin armar listas
+        void paraCadaArista(ListasAdyacencia.Arista a) { adj.paraCada(a); }
+
+        // orden completo (requisitos primero), ya esta mantenido: no se recalcula nada
+        List<Integer> ordenTopologico() { return new ArrayList<>(porOrden.values()); }
+
+        int numAristas() { return aristas; }
+
+        // todo lo que queda bloqueado (directa o indirectamente) mientras x no se haga
+        BitSet bloqueadasPor(int x) { return alcance(x, inv, memoBloqueadas); }
+
+        // todo lo que x necesita antes: sus requisitos, los requisitos de esos, etc.
+        BitSet requisitosDe(int x) { return alcance(x, adj, memoRequisitos); }
+
+        // DFS con pila de ints y BitSet de vistos; si llega a un nodo cuyo alcance ya se
+        // conoce lo pega de un jalon (OR) en lugar de volver a bajar por ahi
+        private BitSet alcance(int x, ListasAdyacencia lados, LinkedHashMap<Integer, BitSet> memo) {
+            BitSet res = memo.get(x);
+            if (res == null) {
+                res = new BitSet();
+                int[] pila = new int[16];
+                int n = 0;
+                pila[n++] = x;
+                while (n > 0) {
+                    int v = pila[--n];
+                    int[] vecinos = lados.crudo(v);
+                    for (int i = 0, g = lados.grado(v); i < g; i++) {
+                        int w = vecinos[i];
+                        if (res.get(w)) continue;
+                        res.set(w);
+                        BitSet conocido = memo.isEmpty() ? null : memo.get(w);
+                        if (conocido != null) {
+                            res.or(conocido);
+                            continue;
+                        }
+                        if (n == pila.length) pila = Arrays.copyOf(pila, n * 2);
+                        pila[n++] = w;
+                    }
+                }
+                memo.put(x, res);
+            }
+            return (BitSet) res.clone();
+        }
+
+        // tira los alcances guardados que pasan por el nodo (o que son de el)
+        private static void olvidar(Map<Integer, BitSet> memo, int nodo) {
+            if (!memo.isEmpty()) memo.entrySet().removeIf(e -> e.getKey() == nodo || e.getValue().get(nodo));
+        }
+
+        // Ruta critica sobre fechaEntrega: la cadena de dependencias cuyo avance de fechas
+        // (fecha de la tarea menos fecha de su requisito, minimo 0) suma mas. Es una sola
+        // pasada sobre el orden topologico que ya tenemos.
+        RutaCritica rutaCritica(IntFunction<Tarea> tareas) {
+            HashMap<Integer, Long> largo = new HashMap<>();
+            HashMap<Integer, Integer> pasos = new HashMap<>();
+            HashMap<Integer, Integer> previo = new HashMap<>();
+            int fin = -1;
+            for (int n : porOrden.values()) {
+                long l = 0;
+                int p = 0;
+                Tarea tn = tareas.apply(n);
+                for (int d : getDeps(n)) {
+                    Tarea td = tareas.apply(d);
+                    long salto = tn != null && td != null
+                            ? Math.max(0, tn.fechaEntrega.getTime() - td.fechaEntrega.getTime()) : 0;
+                    long cand = largo.get(d) + salto;
+                    int candPasos = pasos.get(d) + 1;
+                    if (cand > l || (cand == l && candPasos > p)) {
+                        l = cand;
+                        p = candPasos;
+                        previo.put(n, d);
+                    }
+                }
+                largo.put(n, l);
+                pasos.put(n, p);
+                if (fin == -1 || l > largo.get(fin) || (l == largo.get(fin) && p > pasos.get(fin))) fin = n;
+            }
+            RutaCritica r = new RutaCritica();
+            if (fin == -1) return r;
+            r.largoMs = largo.get(fin);
+            for (Integer n = fin; n != null; n = previo.get(n)) r.tareas.add(n);
+            Collections.reverse(r.tareas);
+            return r;
+        }
+
+        static class RutaCritica {
+            List<Integer> tareas = new ArrayList<>(); // de la primera que hay que hacer a la ultima
+            long largoMs;
+        }
+
+        // Pearce-Kelly: A (posicion lb) va a depender de B (posicion ub > lb).
+        // Hacia adelante desde A sin pasar de ub; si topamos con B hay ciclo.
+        // Hacia atras desde B sin bajar de lb. Luego se reparten las mismas posiciones.
+        private boolean reordenar(int a, int b) {
+            int lb = ord.get(a), ub = ord.get(b);
+            List<Integer> adelante = new ArrayList<>();
+            HashSet<Integer> vistos = new HashSet<>();
+            ArrayDeque<Integer> pila = new ArrayDeque<>();
+            pila.push(a);
+            vistos.add(a);
+            while (!pila.isEmpty()) {
+                int n = pila.pop();
+                adelante.add(n);
+                int[] quienes = inv.crudo(n);
+                for (int i = 0, g = inv.grado(n); i < g; i++) {
+                    int w = quienes[i];
+                    if (w == b) return false; // B ya depende de A: ciclo
+                    if (ord.get(w) < ub && vistos.add(w)) pila.push(w);
+                }
+            }
+            List<Integer> atras = new ArrayList<>();
+            vistos.clear();
+            pila.push(b);
+            vistos.add(b);
+            while (!pila.isEmpty()) {
+                int n = pila.pop();
+                atras.add(n);
+                int[] deps = adj.crudo(n);
+                for (int i = 0, g = adj.grado(n); i < g; i++) {
+                    int w = deps[i];
+                    if (ord.get(w) > lb && vistos.add(w)) pila.push(w);
+                }
+            }
+            Comparator<Integer> porPosicion = Comparator.comparingInt(ord::get);
+            atras.sort(porPosicion);
+            adelante.sort(porPosicion);
+            int[] posiciones = new int[atras.size() + adelante.size()];
+            int i = 0;
+            for (int n : atras) posiciones[i++] = ord.get(n);
+            for (int n : adelante) posiciones[i++] = ord.get(n);
+            Arrays.sort(posiciones);
+            for (int p : posiciones) porOrden.remove(p);
+            i = 0;
+            for (int n : atras) asignarOrden(n, posiciones[i++]);
+            for (int n : adelante) asignarOrden(n, posiciones[i++]);
+            return true;
+        }
+
+        private void asignarOrden(int nodo, int posicion) {
+            ord.put(nodo, posicion);
+            porOrden.put(posicion, nodo);
+        }
+
+        private void iniciarIndices() {
+            inv = new ListasAdyacencia();
+            ord = new HashMap<>();
+            porOrden = new TreeMap<>();
+            minOrden = maxOrden = aristas = 0;
+            memoRequisitos = nuevaMemo();
+            memoBloqueadas = nuevaMemo();
+        }
+
+        // LRU: se queda con los MAX_MEMO alcances usados mas recientemente
+        private static LinkedHashMap<Integer, BitSet> nuevaMemo() {
+            return new LinkedHashMap<Integer, BitSet>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, BitSet> e) { return size() > MAX_MEMO; }
+            };
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            HashMap<Integer, List<Integer>> m = new HashMap<>();
+            adj.paraCada((a, b) -> m.computeIfAbsent(a, k -> new ArrayList<>()).add(b));
+            out.putFields().put("adj", m);
+            out.writeFields();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            Map<Integer, List<Integer>> m = (Map<Integer, List<Integer>>) in.readFields().get("adj", null);
+            adj = new ListasAdyacencia();
+            if (m != null)
+                for (Map.Entry<Integer, List<Integer>> e : m.entrySet())
+                    for (int b : e.getValue()) adj.agregar(e.getKey(), b);
+            reconstruirIndices();
+        }
+
+        // cuando adj se llena de golpe (al cargar de disco): Kahn una vez para sacar el orden en O(V + E)
+        void reconstruirIndices() {
+            if (!ordenarTodo()) {
+                // archivo viejo con ciclos: se meten de nuevo una por una y se tiran las que cierran ciclo
+                ListasAdyacencia viejas = adj;
+                adj = new ListasAdyacencia();
+                iniciarIndices();
+                viejas.paraCada(this::addDep);
+            }
+        }
+
+        // carga masiva, paso 1: la arista solo se pega a adj; el orden y el indice inverso quedan
+        // viejos hasta cerrarLote. false si ya estaba o es A -> A.
+        boolean agregarEnLote(int tareaA, int tareaB) {
+            return tareaA != tareaB && adj.agregar(tareaA, tareaB);
+        }
+
+        // paso 2: un solo Kahn para ver si todo junto sigue sin ciclos. Si no, se quitan las del lote,
+        // se rehace lo de antes (que si era aciclico) y las del lote entran una por una con addDep:
+        // asi solo se pueden rechazar las importadas, nunca una dependencia que ya estaba aceptada.
+        // Regresa cuantas del lote se rechazaron.
+        int cerrarLote(ListasAdyacencia lote) {
+            if (ordenarTodo()) return 0;
+            lote.paraCada(adj::quitar);
+            ordenarTodo();
+            int[] rechazadas = {0};
+            lote.paraCada((a, b) -> {
+                if (!addDep(a, b)) rechazadas[0]++;
+            });
+            return rechazadas[0];
+        }
+
+        // Kahn sobre adj tal cual; false si quedaron nodos sin acomodar (hay ciclo)
+        private boolean ordenarTodo() {
+            iniciarIndices();
+            HashMap<Integer, Integer> grado = new HashMap<>(); // requisitos sin acomodar
+            adj.paraCada((a, b) -> {
+                grado.merge(a, 1, Integer::sum);
+                grado.putIfAbsent(b, 0);
+                inv.agregar(b, a);
+                aristas++;
+            });
+            ArrayDeque<Integer> listos = new ArrayDeque<>();
+            for (Map.Entry<Integer, Integer> e : grado.entrySet()) if (e.getValue() == 0) listos.add(e.getKey());
+            while (!listos.isEmpty()) {
+                int n = listos.poll();
+                asignarOrden(n, ++maxOrden);
+                for (int c : inv.de(n))
+                    if (grado.merge(c, -1, Integer::sum) == 0) listos.add(c);
+            }
+            return ord.size() == grado.size();
+        }
+    }
+
+    // ====== Planificador (tareas listas segun el grafo) ======
+    // Lleva cuantas dependencias abiertas tiene cada tarea pendiente (grado de entrada) y un
+    // indice inverso (quien me espera). Solo las que tienen 0 abiertas viven en el heap "listas",
+    // asi la siguiente tarea accionable sale en O(log n) sin recorrer getDeps() de nadie.
+    static class Planificador {
+        ColaPrioridad listas = new ColaPrioridad();
+        HashMap<Integer, Integer> abiertas = new HashMap<>();           // id -> deps sin completar
+        HashMap<Integer, List<Integer>> dependientes = new HashMap<>(); // id -> quienes la esperan
+
+        // alta de una tarea pendiente (todavia sin dependencias)
+        void agregar(Tarea t) {
+            if (t.completada || abiertas.containsKey(t.id)) return;
+            abiertas.put(t.id, 0);
+            listas.add(t);
+        }
+
+        // la tarea a depende de b: si b sigue pendiente, a queda bloqueada
+        void agregarDep(int a, int b) {
+            if (!abiertas.containsKey(a) || !abiertas.containsKey(b)) return; // alguna ya hecha o no existe
+            dependientes.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+            int n = abiertas.merge(a, 1, Integer::sum);
+            if (n == 1) listas.remove(a);
+        }
+
+        // b se completo (o se elimino): avisamos solo a sus dependientes, O(grado de salida)
+        void completar(int id, IntFunction<Tarea> tareas) {
+            abiertas.remove(id);
+            listas.remove(id);
+            List<Integer> deps = dependientes.remove(id);
+            if (deps == null) return;
+            for (int d : deps) {
+                Integer n = abiertas.get(d);
+                if (n == null) continue; // el dependiente ya no esta pendiente
+                abiertas.put(d, n - 1);
+                if (n == 1) {
+                    Tarea t = tareas.apply(d);
+                    if (t != null) listas.add(t);
+                }
+            }
+        }
+
+        Tarea siguiente() { return listas.peek(); }
+        int listas() { return listas.size(); }
+        int bloqueadas() { return abiertas.size() - listas.size(); }
+
+        // se arma desde cero a partir de la base y el grafo (al cargar de disco)
+        void reconstruir(BaseDatos db, GrafoDependencias grafo) {
+            listas = new ColaPrioridad();
+            abiertas.clear();
+            dependientes.clear();
+            db.forEach(t -> { if (!t.completada) abiertas.put(t.id, 0); });
+            grafo.paraCadaArista((a, b) -> {
+                if (!abiertas.containsKey(a) || !abiertas.containsKey(b)) return;
+                dependientes.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+                abiertas.merge(a, 1, Integer::sum);
+            });
+            // las que quedaron sin dependencias abiertas entran de un jalon (heapify)
+            List<Tarea> sinDeps = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> e : abiertas.entrySet())
+                if (e.getValue() == 0) sinDeps.add(db.getTarea(e.getKey()));
+            listas.agregarTodas(sinDeps);
+        }
+    }
+
+    // ====== Rueda de vencimientos (timing wheel jerarquica) ======
+    // Las tareas pendientes se cuelgan de una rueda segun su fechaEntrega, asi no hay que ordenar
+    // ni recorrer todas las tareas para saber cuales ya vencieron. El tiempo avanza en ticks (tickMs) y hay
+    // NIVELES ruedas de 64 casillas: la 0 es de 1 tick por casilla, la 1 de 64, la 2 de 64^2...
+    // Cada tarea va en el nivel mas bajo donde comparte con "ahora" todo lo de arriba; cuando el
+    // reloj entra a una casilla de un nivel alto, lo que trae baja a los niveles de abajo (cascada).
+    // Lo que no cabe en ningun nivel espera en una lista aparte hasta que le toque.
+    // Alta y cancelacion son O(1) (listas doblemente ligadas + mapa id -> entrada). Cada tarea avisa
+    // dos veces: POR_VENCER cuando falta "aviso" ms y VENCIDA cuando pasa su fecha.
+    static class RuedaVencimientos {
+        enum Evento { POR_VENCER, VENCIDA }
+
+        interface Oyente { void evento(Evento e, int id); }
+
+        private static final int BITS = 6, CASILLAS = 1 << BITS, MASCARA = CASILLAS - 1, NIVELES = 4;
+        private static final int YA = NIVELES * CASILLAS;  // lista de las que ya tocaban
+        private static final int LEJOS = YA + 1;            // las que no caben en la rueda
+
+        private static final class Entrada {
+            final int id;
+            final long vence;  // tick en que vence
+            long dispara;      // tick en que toca avisar (aviso o vencimiento)
+            boolean avisada;
+            int casilla = -1;
+            Entrada ant, sig;
+
+            Entrada(int id, long vence) {
+                this.id = id;
+                this.vence = vence;
+            }
+        }
+
+        private final long tickMs, avisoMs;
+        private final Entrada[] casillas = new Entrada[LEJOS + 1];
+        private final int[] porNivel = new int[NIVELES];
+        private final HashMap<Integer, Entrada> entradas = new HashMap<>();
+        private long ahora; // ultimo tick ya procesado
+
+        RuedaVencimientos(long inicioMs, long tickMs, long avisoMs) {
+            if (tickMs <= 0) throw new IllegalArgumentException("tickMs debe ser positivo: " + tickMs);
+            this.tickMs = tickMs;
+            this.avisoMs = Math.max(0, avisoMs);
+            this.ahora = Math.floorDiv(inicioMs, tickMs);
+        }
+
+        // si ya estaba se reemplaza (al reprogramar); si la fecha ya paso avisa en el siguiente avanzar()
+        void agregar(int id, long venceMs) {
+            cancelar(id);
+            Entrada e = new Entrada(id, techo(venceMs));
+            e.dispara = avisoMs > 0 ? techo(venceMs - avisoMs) : e.vence;
+            e.avisada = avisoMs == 0;
+            entradas.put(id, e);
+            colocar(e);
+        }
+
+        // completada o eliminada: ya no avisa
+        boolean cancelar(int id) {
+            Entrada e = entradas.remove(id);
+            if (e == null) return false;
+            desenlazar(e);
+            return true;
+        }
+
+        boolean contiene(int id) { return entradas.containsKey(id); }
+        int size() { return entradas.size(); }
+
+        // corre el reloj hasta ahoraMs y avisa lo que toque; regresa cuantos eventos hubo.
+        // El oyente puede agregar o cancelar tareas mientras tanto.
+        int avanzar(long ahoraMs, Oyente oyente) {
+            long hasta = Math.floorDiv(ahoraMs, tickMs);
+            int eventos = disparar(YA, oyente);
+            while (ahora < hasta) {
+                if (entradas.isEmpty()) {
+                    ahora = hasta;
+                    break;
+                }
+                // si los niveles de abajo estan vacios no pasa nada hasta que baje algo del primero
+                // que tenga tareas: se salta directo a esa frontera (64^nivel ticks)
+                int nivel = 0;
+                while (nivel < NIVELES && porNivel[nivel] == 0) nivel++;
+                long bloque = (1L << (BITS * nivel)) - 1;
+                ahora = Math.min(hasta, (ahora | bloque) + 1);
+                if ((ahora & MASCARA) == 0) cascada();
+                eventos += disparar((int) (ahora & MASCARA), oyente);
+                eventos += disparar(YA, oyente);
+            }
+            return eventos;
+        }
+
+        // de arriba hacia abajo: lo que baja de un nivel alto puede volver a bajar en el mismo tick
+        private void cascada() {
+            if ((ahora & ((1L << (BITS * NIVELES)) - 1)) == 0) recolocar(LEJOS);
+            for (int nivel = NIVELES - 1; nivel >= 1; nivel--) {
+                if ((ahora & ((1L << (BITS * nivel)) - 1)) != 0) continue;
+                recolocar(nivel * CASILLAS + (int) ((ahora >>> (BITS * nivel)) & MASCARA));
+            }
+        }
+
+        private void recolocar(int casilla) {
+            Entrada e = casillas[casilla];
+            casillas[casilla] = null;
+            while (e != null) {
+                Entrada sig = e.sig;
+                e.ant = e.sig = null;
+                if (casilla < YA) porNivel[casilla / CASILLAS]--;
+                colocar(e);
+                e = sig;
+            }
+        }
+
+        private int disparar(int casilla, Oyente oyente) {
+            int n = 0;
+            Entrada e;
+            while ((e = casillas[casilla]) != null) {
+                desenlazar(e);
+                if (!e.avisada && e.vence > ahora) {
+                    e.avisada = true;
+                    e.dispara = e.vence;
+                    colocar(e);
+                    oyente.evento(Evento.POR_VENCER, e.id);
+                } else {
+                    entradas.remove(e.id);
+                    oyente.evento(Evento.VENCIDA, e.id);
+                }
+                n++;
+            }
+            return n;
+        }
+
+        private void colocar(Entrada e) {
+            long t = e.dispara;
+            int casilla = LEJOS;
+            if (t <= ahora) casilla = YA;
+            else {
+                for (int nivel = 0; nivel < NIVELES; nivel++) {
+                    if (((t ^ ahora) >>> (BITS * (nivel + 1))) == 0) {
+                        casilla = nivel * CASILLAS + (int) ((t >>> (BITS * nivel)) & MASCARA);
+                        break;
+                    }
+                }
+            }
+            e.casilla = casilla;
+            e.sig = casillas[casilla];
+            if (e.sig != null) e.sig.ant = e;
+            casillas[casilla] = e;
+            if (casilla < YA) porNivel[casilla / CASILLAS]++;
+        }
+
+        private void desenlazar(Entrada e) {
+            if (e.ant != null) e.ant.sig = e.sig;
+            else casillas[e.casilla] = e.sig;
+            if (e.sig != null) e.sig.ant = e.ant;
+            if (e.casilla < YA) porNivel[e.casilla / CASILLAS]--;
+            e.ant = e.sig = null;
+            e.casilla = -1;
+        }
+
+        // fecha en ms -> tick, redondeando hacia arriba para no avisar antes de tiempo
+        private long techo(long ms) {
+            return Math.floorDiv(ms, tickMs) + (Math.floorMod(ms, tickMs) == 0 ? 0 : 1);
+        }
+    }
+
+    // ====== Motor de tareas concurrente (TaskEngine) ======
+    // Version para usar embebida con muchos hilos (productores que dan de alta y workers que
+    // toman tareas), sin un candado global:
+    // - ids con AtomicInteger (Tarea.NEXT_ID), tareas en un ConcurrentHashMap
+    // - cola de listas concurrente: varios workers pueden hacer tomar() a la vez
+    // - cada tarea lleva un contador atomico de dependencias abiertas; completar baja el de sus
+    //   dependientes y el que llega a 0 entra a la cola. La lista de dependientes de cada tarea
+    //   se protege con un candado por franja (id % franjas), no con uno solo para todo.
+    // - el grafo (deteccion de ciclos) solo se bloquea al agregar/quitar aristas.
+    // Si una dependencia se agrega justo cuando otro hilo ya tomo la tarea, ya no la detiene.
+    static class MotorTareas {
+        static final int BLOQUEADA = 0, LISTA = 1, TOMADA = 2, COMPLETADA = 3, ELIMINADA = 4;
+
+        static class Nodo {
+            final Tarea tarea;
+            final AtomicInteger pendientes = new AtomicInteger(); // dependencias sin terminar
+            final AtomicInteger estado;
+            // protegidos por el candado de la franja de esta tarea
+            final ArrayList<Integer> dependientes = new ArrayList<>();
+            boolean cerrado; // ya termino: no acepta nuevos dependientes
+
+            Nodo(Tarea t, int estado) {
+                tarea = t;
+                this.estado = new AtomicInteger(estado);
+            }
+        }
+
+        private final ConcurrentHashMap<Integer, Nodo> nodos = new ConcurrentHashMap<>();
+        // en la cola solo hay tareas en estado LISTA (una entrada por cada paso a LISTA);
+        // las que se completan o eliminan estando ahi se descartan al salir
+        private final PriorityBlockingQueue<Tarea> listas = new PriorityBlockingQueue<>(64, ColaPrioridad.ORDEN);
+        private final ReentrantLock[] franjas;
+        private final GrafoDependencias grafo = new GrafoDependencias();
+        // completadas que ya se olvidaron (olvidar): depender de ellas ya no bloquea. Un bit por id
+        // en vez de un Nodo entero; protegido con el candado del grafo
+        private final BitSet olvidadas = new BitSet();
+
+        MotorTareas() { this(64); }
+
+        MotorTareas(int numFranjas) {
+            franjas = new ReentrantLock[numFranjas];
+            for (int i = 0; i < numFranjas; i++) franjas[i] = new ReentrantLock();
+        }
+
+        Tarea crear(String titulo, String depto, int urgencia, Date fecha) {
+            Tarea t = new Tarea(titulo, depto, urgencia, fecha);
+            agregar(t);
+            return t;
+        }
+
+        // Alta junto con sus dependencias. Si alguna no existe (o es ella misma) truena antes de
+        // tocar nada. Las aristas entran al grafo antes de que la tarea sea visible, asi nadie se
+        // puede colgar de ella a medias y no hay ciclo posible. Entra con un "pendiente" de mas que
+        // se quita al final: ningun worker la toma antes de tener todas sus dependencias.
+        void agregar(Tarea t, int... deps) {
+            Nodo n = new Nodo(t, t.completada ? COMPLETADA : BLOQUEADA);
+            n.cerrado = t.completada;
+            n.pendientes.set(1);
+            synchronized (grafo) {
+                for (int d : deps)
+                    if (d == t.id || (!nodos.containsKey(d) && !olvidadas.get(d)))
+                        throw new IllegalArgumentException("la tarea " + t.id + " no puede depender de " + d + ": no existe");
+                if (nodos.putIfAbsent(t.id, n) != null) throw new IllegalArgumentException("ya existe la tarea " + t.id);
+                for (int d : deps) if (!olvidadas.get(d)) grafo.addDep(t.id, d);
+            }
+            // si alguna se elimino en el inter, cuenta como terminada (igual que en eliminar)
+            for (int d : deps) esperar(n, d);
+            if (n.pendientes.decrementAndGet() == 0 && !t.completada) promover(n);
+        }
+
+        // a depende de b; false si alguna no existe o si cerraria un ciclo
+        boolean agregarDep(int a, int b) {
+            Nodo na = nodos.get(a);
+            if (na == null) return false;
+            synchronized (grafo) {
+                if (olvidadas.get(b)) return true; // ya termino hace rato: no bloquea
+                if (!nodos.containsKey(b) || !grafo.addDep(a, b)) return false;
+            }
+            esperar(na, b);
+            return true;
+        }
+
+        // na queda esperando a b (si b sigue viva y no ha terminado)
+        private void esperar(Nodo na, int b) {
+            Nodo nb = nodos.get(b);
+            if (nb == null) return;
+            ReentrantLock candado = franja(b);
+            candado.lock();
+            try {
+                if (nb.cerrado) return; // b ya termino: no bloquea a nadie
+                na.pendientes.incrementAndGet();
+                nb.dependientes.add(na.tarea.id);
+            } finally {
+                candado.unlock();
+            }
+        }
+
+        // bloquea hasta que haya una tarea lista y la reclama para este hilo
+        Tarea tomar() throws InterruptedException {
+            while (true) {
+                Tarea t = listas.take();
+                if (reclamar(t)) return t;
+            }
+        }
+
+        // como tomar() pero se rinde despues del timeout (null)
+        Tarea tomar(long timeout, TimeUnit unidad) throws InterruptedException {
+            long limite = System.nanoTime() + unidad.toNanos(timeout);
+            while (true) {
+                long resta = limite - System.nanoTime();
+                Tarea t = listas.poll(Math.max(0, resta), TimeUnit.NANOSECONDS);
+                if (t == null) return null;
+                if (reclamar(t)) return t;
+            }
+        }
+
+        boolean completar(int id) {
+            Nodo n = nodos.get(id);
+            if (n == null || !terminar(n, COMPLETADA)) return false;
+            n.tarea.marcarCompletada();
+            liberar(n);
+            return true;
+        }
+
+        // sus dependientes dejan de esperarla (igual que si se completara)
+        boolean eliminar(int id) {
+            Nodo n = nodos.get(id);
+            if (n == null || !terminar(n, ELIMINADA)) return false;
+            liberar(n);
+            nodos.remove(id);
+            synchronized (grafo) {
+                grafo.eliminarNodo(id);
+            }
+            return true;
+        }
+
+        // Suelta una tarea que ya no va a cambiar (su Nodo y sus aristas). De una completada solo
+        // queda un bit para que depender de ella siga contando como cumplido; una tomada que nunca
+        // se completo (fallo, cancelada) se va sin mas y quien la esperaba sigue bloqueado, igual
+        // que antes. Sin esto un motor que corre millones de tareas crece sin limite.
+        // false si no existe o todavia puede cambiar.
+        boolean olvidar(int id) {
+            Nodo n = nodos.get(id);
+            if (n == null) return false;
+            int e = n.estado.get();
+            if (e != COMPLETADA && e != TOMADA) return false;
+            synchronized (grafo) {
+                if (e == COMPLETADA) olvidadas.set(id);
+                nodos.remove(id);
+                grafo.eliminarNodo(id);
+            }
+            return true;
+        }
+
+        Tarea getTarea(int id) {
+            Nodo n = nodos.get(id);
+            return n == null ? null : n.tarea;
+        }
+
+        int estado(int id) {
+            Nodo n = nodos.get(id);
+            if (n != null) return n.estado.get();
+            synchronized (grafo) {
+                return olvidadas.get(id) ? COMPLETADA : ELIMINADA;
+            }
+        }
+
+        int size() { return nodos.size(); }
+
+        // aprox: la cola puede traer entradas viejas que se descartan al tomar
+        int listasAprox() { return listas.size(); }
+
+        private boolean reclamar(Tarea t) {
+            Nodo n = nodos.get(t.id);
+            if (n == null) return false;
+            if (n.pendientes.get() > 0) {
+                // le salio una dependencia mientras esperaba en la cola: regresa a bloqueada.
+                // Si justo en ese momento se libero, la promovemos nosotros (nadie mas lo hara).
+                if (n.estado.compareAndSet(LISTA, BLOQUEADA) && n.pendientes.get() == 0) promover(n);
+                return false;
+            }
+            return n.estado.compareAndSet(LISTA, TOMADA);
+        }
+
+        private void promover(Nodo n) {
+            if (n.estado.compareAndSet(BLOQUEADA, LISTA)) listas.offer(n.tarea);
+        }
+
+        private static boolean terminar(Nodo n, int fin) {
+            while (true) {
+                int e = n.estado.get();
+                if (e == COMPLETADA || e == ELIMINADA) return false;
+                if (n.estado.compareAndSet(e, fin)) return true;
+            }
+        }
+
+        private void liberar(Nodo n) {
+            Integer[] deps;
+            ReentrantLock candado = franja(n.tarea.id);
+            candado.lock();
+            try {
+                n.cerrado = true;
+                deps = n.dependientes.toArray(new Integer[0]);
+                n.dependientes.clear();
+            } finally {
+                candado.unlock();
+            }
+            for (int d : deps) {
+                Nodo nd = nodos.get(d);
+                if (nd != null && nd.pendientes.decrementAndGet() == 0) promover(nd);
+            }
+        }
+
+        private ReentrantLock franja(int id) { return franjas[Math.floorMod(id, franjas.length)]; }
+    }
+
+    // ====== Ejecutor de tareas (runtime) ======
+    // Corre de verdad las tareas del MotorTareas: un despachador saca las listas en orden de
+    // prioridad (urgencia y luego fechaEntrega) y cada una corre su accion en un hilo virtual.
+    // Al terminar bien se marca completada y el motor libera a sus dependientes. Si falla, se
+    // cancela o se pasa del tiempo, sus dependientes se quedan esperando.
+    // Cada depto tiene un maximo de tareas corriendo a la vez; las que no caben esperan en una
+    // fila propia del depto (tambien por prioridad) sin frenar a los demas deptos.
+    static class EjecutorTareas implements AutoCloseable {
+        enum Resultado { EXITO, FALLIDA, CANCELADA, TIEMPO_AGOTADO }
+
+        private static final Metricas.Histograma CORRIDA = Metricas.histograma("ejecutor.corrida", true);
+        private static final Metricas.Contador[] POR_RESULTADO = new Metricas.Contador[Resultado.values().length];
+        static {
+            for (Resultado r : Resultado.values())
+                POR_RESULTADO[r.ordinal()] = Metricas.contador("ejecutor." + r.name().toLowerCase());
+        }
+
+        // cupo y fila de espera de un depto (protegidos con synchronized sobre el objeto)
+        static class Depto {
+            int limite;
+            int corriendo;
+            final PriorityQueue<Tarea> espera = new PriorityQueue<>(ColaPrioridad.ORDEN);
+
+            Depto(int limite) { this.limite = limite; }
+        }
+
+        private final MotorTareas motor;
+        private final ExecutorService hilos = hilosVirtuales();
+        private final ScheduledExecutorService reloj;
+        private final ConcurrentHashMap<String, Depto> deptos = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, FutureTask<Void>> enCurso = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Long> timeouts = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Resultado> resultados = new ConcurrentHashMap<>();
+        // ids ya terminados en orden de llegada: pasando de "retener" se olvida el mas viejo
+        // (su resultado y su nodo en el motor)
+        private final ConcurrentLinkedQueue<Integer> terminadas = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger cuantasTerminadas = new AtomicInteger();
+        private final int limitePorDefecto;
+        private final long timeoutPorDefectoMs;
+        private final int retener;
+        private final Thread despachador;
+
+        static final int RETENER = 100_000;
+
+        EjecutorTareas(MotorTareas motor, int limitePorDefecto, long timeoutPorDefectoMs) {
+            this(motor, limitePorDefecto, timeoutPorDefectoMs, RETENER);
+        }
+
+        EjecutorTareas(MotorTareas motor, int limitePorDefecto, long timeoutPorDefectoMs, int retener) {
+            this.motor = motor;
+            this.limitePorDefecto = limitePorDefecto;
+            this.timeoutPorDefectoMs = timeoutPorDefectoMs;
+            this.retener = retener;
+            ScheduledThreadPoolExecutor r = new ScheduledThreadPoolExecutor(1, x -> {
+                Thread h = new Thread(x, "ejecutor-timeouts");
+                h.setDaemon(true);
+                return h;
+            });
+            // sin esto cada alarma cancelada se queda en la cola del reloj hasta su hora
+            r.setRemoveOnCancelPolicy(true);
+            reloj = r;
+            despachador = new Thread(this::despachar, "ejecutor-despachador");
+            despachador.setDaemon(true);
+            despachador.start();
+        }
+
+        // hilos virtuales si el JDK los trae (21+); si no, un pool de hilos normales que crece
+        static ExecutorService hilosVirtuales() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(r -> {
+                    Thread h = new Thread(r, "tarea");
+                    h.setDaemon(true);
+                    return h;
+                });
+            }
+        }
+
+        void limite(String depto, int maximo) {
+            Depto d = depto(depto);
+            List<Tarea> arrancar = new ArrayList<>();
+            synchronized (d) {
+                d.limite = maximo;
+                while (d.corriendo < d.limite && !d.espera.isEmpty()) {
+                    d.corriendo++;
+                    arrancar.add(d.espera.poll());
+                }
+            }
+            arrancar.forEach(this::lanzar);
+        }
+
+        // alta de una tarea con su accion; no arranca hasta que terminen sus dependencias
+        // IllegalArgumentException si alguna dependencia no existe (ver MotorTareas.agregar)
+        Tarea enviar(Tarea t, Runnable accion, long timeoutMs, int... deps) {
+            t.accion = accion;
+            if (timeoutMs > 0) timeouts.put(t.id, timeoutMs);
+            try {
+                motor.agregar(t, deps);
+            } catch (IllegalArgumentException e) {
+                timeouts.remove(t.id);
+                throw e;
+            }
+            return t;
+        }
+
+        Tarea enviar(String titulo, String depto, int urgencia, Date fecha, Runnable accion, int... deps) {
+            return enviar(new Tarea(titulo, depto, urgencia, fecha), accion, 0, deps);
+        }
+
+        // si ya corre se interrumpe; si todavia no, ya no va a arrancar
+        boolean cancelar(int id) {
+            int e = motor.estado(id);
+            if (e == MotorTareas.COMPLETADA || e == MotorTareas.ELIMINADA) return false; // o ya se olvido
+            if (resultados.putIfAbsent(id, Resultado.CANCELADA) != null) return false;
+            FutureTask<Void> f = enCurso.get(id);
+            if (f != null) f.cancel(true);
+            return true;
+        }
+
+        // null si sigue pendiente o si ya salio de la ventana de retencion
+        Resultado resultado(int id) { return resultados.get(id); }
+        int enCurso() { return enCurso.size(); }
+
+        @Override
+        public void close() {
+            despachador.interrupt();
+            hilos.shutdownNow();
+            reloj.shutdownNow();
+        }
+
+        private void despachar() {
+            try {
+                while (true) {
+                    Tarea t = motor.tomar();
+                    if (resultados.containsKey(t.id)) { // la cancelaron antes de arrancar
+                        archivar(t.id);
+                        continue;
+                    }
+                    Depto d = depto(t.departamento);
+                    boolean hayCupo;
+                    synchronized (d) {
+                        hayCupo = d.corriendo < d.limite;
+                        if (hayCupo) d.corriendo++;
+                        else d.espera.add(t);
+                    }
+                    if (hayCupo) lanzar(t);
+                }
+            } catch (InterruptedException e) {
+                // close()
+            }
+        }
+
+        private void lanzar(Tarea t) {
+            FutureTask<Void> f = new FutureTask<>(() -> correr(t), null);
+            enCurso.put(t.id, f);
+            if (resultados.containsKey(t.id)) f.cancel(false); // cancelada mientras esperaba cupo
+            long timeout = timeouts.getOrDefault(t.id, timeoutPorDefectoMs);
+            ScheduledFuture<?> alarma = null;
+            if (timeout > 0) {
+                try {
+                    alarma = reloj.schedule(() -> {
+                        if (!f.isDone() && resultados.putIfAbsent(t.id, Resultado.TIEMPO_AGOTADO) == null) f.cancel(true);
+                    }, timeout, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // reloj ya cerrado (close): la de abajo tampoco va a correr
+                }
+            }
+            ScheduledFuture<?> a = alarma;
+            try {
+                hilos.execute(() -> {
+                    try {
+                        f.run();
+                    } finally {
+                        terminar(t, a);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                terminar(t, a); // ya se cerro el ejecutor
+            }
+        }
+
+        private void correr(Tarea t) {
+            try {
+                long inicio = System.nanoTime();
+                if (t.accion != null) t.accion.run();
+                CORRIDA.desde(inicio);
+                // solo cuenta como exito si nadie la cancelo / le gano el timeout
+                if (resultados.putIfAbsent(t.id, Resultado.EXITO) == null) motor.completar(t.id);
+            } catch (RuntimeException | Error e) {
+                resultados.putIfAbsent(t.id, Resultado.FALLIDA);
+            }
+        }
+
+        // libera el cupo del depto y arranca a la siguiente que esperaba en ese depto
+        private void terminar(Tarea t, ScheduledFuture<?> alarma) {
+            if (alarma != null) alarma.cancel(false);
+            Resultado r = resultados.get(t.id);
+            if (r != null) POR_RESULTADO[r.ordinal()].inc();
+            enCurso.remove(t.id);
+            timeouts.remove(t.id);
+            archivar(t.id);
+            Depto d = depto(t.departamento);
+            Tarea siguiente;
+            synchronized (d) {
+                siguiente = d.corriendo <= d.limite ? d.espera.poll() : null;
+                if (siguiente == null) d.corriendo--;
+            }
+            if (siguiente != null) lanzar(siguiente);
+        }
+
+        // entra a la ventana de retencion; la mas vieja que se sale se olvida por completo
+        private void archivar(int id) {
+            terminadas.add(id);
+            if (cuantasTerminadas.incrementAndGet() <= retener) return;
+            Integer vieja = terminadas.poll();
+            if (vieja == null) return;
+            cuantasTerminadas.decrementAndGet();
+            resultados.remove(vieja);
+            motor.olvidar(vieja);
+        }
+
+        private Depto depto(String nombre) {
+            return deptos.computeIfAbsent(nombre, k -> new Depto(limitePorDefecto));
+        }
+    }
+
+    // ====== Servidor (modo red) ======
+    // Expone las operaciones basicas por TCP con un protocolo de lineas: cada peticion es una linea
+    // con los campos separados por tabulador y cada respuesta empieza con "OK" o "ERR". Un cliente
+    // puede mandar muchas peticiones sin esperar respuesta (pipelining); las respuestas le llegan
+    // en el mismo orden. Cada conexion tiene un hilo que lee y otro que escribe (virtuales si el
+    // JDK los trae). El estado (db, cola, grafo...) lo sigue tocando un solo hilo, el motor: en
+    // cada vuelta junta lo que haya llegado de todas las conexiones (hasta LOTE peticiones), lo
+    // aplica y hace un solo fsync de la bitacora por lote antes de contestar.
+    //
+    //   ALTA titulo depto urgencia [fecha]  -> OK id
+    //   COMPLETAR id  /  ELIMINAR id        -> OK
+    //   DEP a b  (a depende de b)           -> OK  |  ERR ciclo
+    //   SIGUIENTE                           -> OK id titulo depto urgencia fecha completada  |  OK
+    //   CONSULTA [depto=X] [urgencia=N] [pendientes] [horas=N] [limite=N]
+    //                                       -> OK n  y luego n lineas de tarea
+    //   PING                                -> OK PONG
+    static class ServidorTareas implements Closeable {
+        static final int LOTE = 1024;
+        static final int MAX_EN_ESPERA = 64 * 1024; // con la entrada llena los lectores esperan (backpressure)
+        private static final String CIERRE = "\u0000fin"; // para el hilo escritor de una conexion
+        private static final Metricas.Contador CONEXIONES = Metricas.contador("servidor.conexiones");
+        private static final Metricas.Contador PETICIONES = Metricas.contador("servidor.peticiones");
+        private static final Metricas.Histograma TAM_LOTE = Metricas.histograma("servidor.lote", false);
+        private static final Metricas.Histograma VUELTA = Metricas.histograma("servidor.vuelta", true);
+
+        // accion corre en el hilo del motor y regresa la respuesta
+        private static final class Peticion {
+            final Conexion con;
+            final Supplier<String> accion;
+
+            Peticion(Conexion con, Supplier<String> accion) {
+                this.con = con;
+                this.accion = accion;
+            }
+        }
+
+        private final class Conexion {
+            final Socket socket;
+            final LinkedBlockingQueue<String> salida = new LinkedBlockingQueue<>();
+            volatile boolean rota;
+
+            Conexion(Socket socket) { this.socket = socket; }
+
+            void leer() {
+                try (BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+                    String linea;
+                    while ((linea = in.readLine()) != null) {
+                        if (linea.isBlank()) continue;
+                        if (!encolar(new Peticion(this, interpretar(linea)))) return;
+                    }
+                } catch (IOException e) {
+                    rota = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // va detras de sus peticiones: el escritor cierra cuando ya contesto todo. Si el
+                    // servidor se esta apagando no hace falta, el motor cierra a todos los escritores
+                    try {
+                        encolar(new Peticion(this, () -> CIERRE));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            // junta las respuestas que ya esten listas en un solo flush
+            void escribir() {
+                try (Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+                    while (true) {
+                        String r = salida.take();
+                        if (r == CIERRE) break;
+                        out.write(r);
+                        out.write('\n');
+                        if (salida.isEmpty()) out.flush();
+                    }
+                } catch (IOException e) {
+                    rota = true; // el cliente se fue; el lector se entera al leer
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    conexiones.remove(this);
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        // ya estaba cerrado
+                    }
+                }
+            }
+        }
+
+        private final ServerSocket servidor;
+        private final LinkedBlockingQueue<Peticion> entrada = new LinkedBlockingQueue<>(MAX_EN_ESPERA);
+        private final ExecutorService hilos = EjecutorTareas.hilosVirtuales();
+        private final Set<Conexion> conexiones = ConcurrentHashMap.newKeySet();
+        private final Thread aceptador;
+        private volatile boolean parando;
+
+        ServidorTareas(int puerto) throws IOException {
+            servidor = new ServerSocket(puerto);
+            aceptador = new Thread(this::aceptar, "servidor-aceptador");
+            aceptador.setDaemon(true);
+            aceptador.start();
+        }
+
+        int puerto() { return servidor.getLocalPort(); }
+
+        private void aceptar() {
+            while (!servidor.isClosed()) {
+                try {
+                    Socket s = servidor.accept();
+                    s.setTcpNoDelay(true);
+                    CONEXIONES.inc();
+                    Conexion c = new Conexion(s);
+                    conexiones.add(c);
+                    hilos.execute(c::leer);
+                    hilos.execute(c::escribir);
+                    if (parando) c.salida.add(CIERRE); // llego justo cuando el motor ya cerro a los demas
+                } catch (IOException e) {
+                    if (!servidor.isClosed()) System.out.println("Error aceptando conexion: " + e.getMessage());
+                }
+            }
+        }
+
+        // el motor: corre en el hilo que lo llama hasta que alguien haga close() o falle la bitacora.
+        // false si se paro porque la bitacora fallo: lo que quedo en memoria no se confirmo a nadie.
+        // Tambien mueve la rueda de vencimientos cada VENC_TICK_MS (aqui no hay menu que lo haga),
+        // y en este mismo hilo, asi la rueda no necesita candados
+        boolean correr() {
+            List<Peticion> lote = new ArrayList<>(LOTE);
+            String[] respuestas = new String[LOTE];
+            boolean durable = true;
+            long tocaRueda = 0;
+            while (!parando) {
+                lote.clear();
+                long ahora = System.currentTimeMillis();
+                if (ahora >= tocaRueda) {
+                    revisarVencimientos();
+                    tocaRueda = ahora + VENC_TICK_MS;
+                }
+                try {
+                    // con espera corta para ver 'parando' (y la rueda) aunque no llegue nada
+                    Peticion primera = entrada.poll(Math.min(100, Math.max(1, tocaRueda - ahora)), TimeUnit.MILLISECONDS);
+                    if (primera == null) continue;
+                    lote.add(primera);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                entrada.drainTo(lote, LOTE - 1);
+                long inicio = System.nanoTime();
+                long fallasAntes = fallasBitacora;
+                for (int i = 0; i < lote.size(); i++) {
+                    Peticion p = lote.get(i);
+                    try {
+                        respuestas[i] = p.accion.get();
+                    } catch (RuntimeException e) {
+                        respuestas[i] = "ERR " + e.getMessage();
+                    }
+                }
+                // un fsync por lote (group commit) y hasta entonces se contesta
+                String error = fallasBitacora != fallasAntes ? "no se pudo escribir" : null;
+                if (wal != null && error == null) {
+                    try {
+                        wal.sincronizar();
+                    } catch (IOException e) {
+                        error = e.getMessage();
+                    }
+                }
+                if (error != null) {
+                    // no hay forma de saber que parte del lote llego a disco: no se confirma nada y el
+                    // motor se para (seguir aceptando cambios en memoria que no se pueden guardar no sirve)
+                    System.out.println("Error en la bitacora (" + error + "): el servidor se detiene");
+                    for (int i = 0; i < lote.size(); i++)
+                        if (respuestas[i] != CIERRE) respuestas[i] = "ERR bitacora: " + error;
+                    durable = false;
+                    parando = true;
+                }
+                for (int i = 0; i < lote.size(); i++) {
+                    Peticion p = lote.get(i);
+                    // a una conexion rota ya no se le contesta, pero el CIERRE si le llega a su escritor
+                    if (!p.con.rota || respuestas[i] == CIERRE) p.con.salida.add(respuestas[i]);
+                    respuestas[i] = null;
+                }
+                PETICIONES.add(lote.size());
+                TAM_LOTE.registrar(lote.size());
+                VUELTA.desde(inicio);
+            }
+            // lo que quedo en la entrada no se aplico ni se contesta; cada escritor manda lo que ya
+            // tenia y cierra su socket (con eso su lector tambien termina)
+            close();
+            for (Conexion c : conexiones) c.salida.add(CIERRE);
+            hilos.shutdown();
+            return durable;
+        }
+
+        // para el motor (a lo mas en una vuelta) y deja de aceptar conexiones
+        @Override
+        public void close() {
+            parando = true;
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                // nada que hacer
+            }
+        }
+
+        // con la entrada llena espera turno (backpressure), pero sin quedarse colgado si el motor
+        // ya paro; false si el servidor se esta apagando
+        private boolean encolar(Peticion p) throws InterruptedException {
+            while (!parando)
+                if (entrada.offer(p, 100, TimeUnit.MILLISECONDS)) return true;
+            return false;
+        }
+
+        // se interpreta en el hilo de la conexion; al motor solo le llega lo que hay que hacer
+        static Supplier<String> interpretar(String linea) {
+            String[] c = linea.split("\t", -1);
+            try {
+                switch (c[0].trim().toUpperCase()) {
+                    case "ALTA": {
+                        campos(c, 4, 5);
+                        String titulo = c[1].trim(), depto = c[2].trim();
+                        int urg = entero(c[3]);
+                        if (titulo.isEmpty() || depto.isEmpty()) throw new IllegalArgumentException("titulo y depto no pueden ir vacios");
+                        if (urg < 1 || urg > 5) throw new IllegalArgumentException("urgencia fuera de 1-5: " + urg);
+                        Date fecha = c.length > 4 && !c[4].isBlank() ? CargaMasiva.fecha(c[4].trim()) : null;
+                        return () -> alta(titulo, depto, urg, fecha);
+                    }
+                    case "COMPLETAR": {
+                        campos(c, 2, 2);
+                        int id = entero(c[1]);
+                        return () -> completarTarea(id) != null ? "OK" : "ERR no existe " + id;
+                    }
+                    case "ELIMINAR": {
+                        campos(c, 2, 2);
+                        int id = entero(c[1]);
+                        return () -> quitarTarea(id) != null ? "OK" : "ERR no existe " + id;
+                    }
+                    case "DEP": {
+                        campos(c, 3, 3);
+                        int a = entero(c[1]), b = entero(c[2]);
+                        return () -> dep(a, b);
+                    }
+                    case "SIGUIENTE": {
+                        campos(c, 1, 1);
+                        return () -> {
+                            Tarea t = planificador.siguiente();
+                            return t == null ? "OK" : "OK " + linea(t);
+                        };
+                    }
+                    case "CONSULTA": return consulta(c);
+                    case "PING": return () -> "OK PONG";
+                    default: throw new IllegalArgumentException("comando desconocido: " + c[0]);
+                }
+            } catch (IllegalArgumentException | java.time.DateTimeException e) {
+                String error = "ERR " + e.getMessage();
+                return () -> error;
+            }
+        }
+
+        private static String alta(String titulo, String depto, int urg, Date fecha) {
+            // sin fecha: igual que en el menu, tantos dias como urgencia
+            Tarea t = new Tarea(titulo, depto, urg, fecha != null ? fecha : new Date(System.currentTimeMillis() + urg * 86400000L));
+            registrarTarea(t);
+            return "OK " + t.id;
+        }
+
+        private static String dep(int a, int b) {
+            if (db.getTarea(a) == null || db.getTarea(b) == null) return "ERR no existe " + (db.getTarea(a) == null ? a : b);
+            return registrarDep(a, b) ? "OK" : "ERR ciclo";
+        }
+
+        private static Supplier<String> consulta(String[] c) {
+            String depto = null;
+            int urgMin = 1, horas = 0, limite = 100;
+            boolean pendientes = false;
+            for (int i = 1; i < c.length; i++) {
+                String f = c[i].trim();
+                int igual = f.indexOf('=');
+                String clave = igual < 0 ? f : f.substring(0, igual), valor = igual < 0 ? "" : f.substring(igual + 1);
+                switch (clave) {
+                    case "depto": depto = valor; break;
+                    case "urgencia": urgMin = entero(valor); break;
+                    case "pendientes": pendientes = true; break;
+                    case "horas": horas = entero(valor); break;
+                    case "limite": limite = entero(valor); break;
+                    case "": break;
+                    default: throw new IllegalArgumentException("filtro desconocido: " + clave);
+                }
+            }
+            String d = depto;
+            int u = urgMin, h = horas, lim = Math.max(0, limite);
+            boolean p = pendientes;
+            return () -> {
+                Consulta q = db.consulta();
+                if (d != null) q.depto(d);
+                if (u > 1) q.urgenciaMin(u);
+                if (p) q.pendientes();
+                if (h > 0) q.venceAntesDe(new Date(System.currentTimeMillis() + h * 3600000L));
+                BitSet ids = q.ids();
+                StringBuilder sb = new StringBuilder();
+                int n = 0;
+                for (int id = ids.nextSetBit(0); id >= 0 && n < lim; id = ids.nextSetBit(id + 1), n++)
+                    sb.append('\n').append(linea(db.getTarea(id)));
+                return "OK " + n + sb;
+            };
+        }
+
+        // id titulo depto urgencia fecha completada(1/0), separados por tabulador
+        static String linea(Tarea t) {
+            return t.id + "\t" + t.titulo.replace('\t', ' ') + "\t" + t.departamento.replace('\t', ' ') + "\t"
+                    + t.urgencia + "\t" + CargaMasiva.fechaIso(t.fechaEntrega) + "\t" + (t.completada ? 1 : 0);
+        }
+
+        private static void campos(String[] c, int min, int max) {
+            if (c.length < min || c.length > max)
+                throw new IllegalArgumentException(c[0].trim() + " lleva " + (min == max ? min - 1 : (min - 1) + "-" + (max - 1)) + " campos");
+        }
+
+        private static int entero(String s) {
+            try {
+                return Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("no es numero: " + s);
+            }
+        }
+    }
+
+    // ====== Cliente del servidor: consola y generador de carga ======
+    static class ClienteTareas {
+        private static final long ALTA = 0, CONSULTA = 1, OTRA = 2; // que se mando (generador de carga)
+
+        // El menu de siempre pero contra un servidor: las preguntas se hacen aqui (sc, readInt) y
+        // cada opcion sale como peticion del protocolo. Este proceso no abre los datos.
+        static void menu(String host, int puerto) {
+            try (Socket s = new Socket(host, puerto);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+                System.out.println("Conectado a " + host + ":" + puerto);
+                while (true) {
+                    System.out.println("\n--- Sistema Avanzado de Tareas (servidor " + host + ":" + puerto + ") ---");
+                    System.out.println("1) Agregar tarea");
+                    System.out.println("2) Consultar tareas con filtros");
+                    System.out.println("3) Siguiente tarea lista (sin dependencias pendientes)");
+                    System.out.println("4) Marcar tarea como completada");
+                    System.out.println("5) Eliminar tarea");
+                    System.out.println("6) Agregar dependencia");
+                    System.out.println("7) Comandos directos (protocolo)");
+                    System.out.println("0) Salir");
+                    System.out.print("Opcion: ");
+                    if (!sc.hasNextLine()) return;
+                    switch (sc.nextLine().trim()) {
+                        case "1": agregar(in, out); break;
+                        case "2": consultar(in, out); break;
+                        case "3": {
+                            String r = pedir(in, out, "SIGUIENTE").get(0);
+                            System.out.println(r.equals("OK") ? "No hay tareas listas" : r.startsWith("OK ") ? tarea(r.substring(3)) : r);
+                            break;
+                        }
+                        case "4": mostrar(pedir(in, out, "COMPLETAR\t" + readInt("ID a completar: ", 1, Integer.MAX_VALUE)), "Tarea completada"); break;
+                        case "5": mostrar(pedir(in, out, "ELIMINAR\t" + readInt("ID a eliminar: ", 1, Integer.MAX_VALUE)), "Tarea eliminada"); break;
+                        case "6": {
+                            int a = readInt("ID de la tarea: ", 1, Integer.MAX_VALUE);
+                            int b = readInt("Depende de (ID): ", 1, Integer.MAX_VALUE);
+                            mostrar(pedir(in, out, "DEP\t" + a + "\t" + b), "Dependencia agregada");
+                            break;
+                        }
+                        case "7": consola(in, out); break;
+                        case "0": return;
+                        default: System.out.println("Opcion invalida\n");
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error de conexion: " + e.getMessage());
+            }
+        }
+
+        private static void agregar(BufferedReader in, PrintWriter out) throws IOException {
+            System.out.print("Titulo: ");
+            String tit = campo(sc.nextLine());
+            System.out.print("Depto: ");
+            String depto = campo(sc.nextLine());
+            int urg = readInt("Urgencia (1-5): ", 1, 5);
+            String r = pedir(in, out, "ALTA\t" + tit + "\t" + depto + "\t" + urg).get(0);
+            if (!r.startsWith("OK ")) {
+                System.out.println(r);
+                return;
+            }
+            String id = r.substring(3).trim();
+            System.out.println("Tarea agregada con ID " + id);
+            System.out.print("Dependencias (IDs separados por comas, vacio = ninguna): ");
+            for (String p : sc.nextLine().split(",")) {
+                if (p.isBlank()) continue;
+                String d = pedir(in, out, "DEP\t" + id + "\t" + campo(p)).get(0);
+                if (!d.equals("OK")) System.out.println("Dependencia con " + p.trim() + " rechazada: " + d);
+            }
+        }
+
+        private static void consultar(BufferedReader in, PrintWriter out) throws IOException {
+            StringBuilder q = new StringBuilder("CONSULTA");
+            System.out.print("Depto (vacio = todos): ");
+            String depto = campo(sc.nextLine());
+            if (!depto.isEmpty()) q.append("\tdepto=").append(depto);
+            q.append("\turgencia=").append(readInt("Urgencia minima (1-5): ", 1, 5));
+            System.out.print("Solo pendientes? (s/n): ");
+            if (sc.nextLine().trim().equalsIgnoreCase("s")) q.append("\tpendientes");
+            int horas = readInt("Que venzan en las proximas N horas (0 = sin limite): ", 0, Integer.MAX_VALUE);
+            if (horas > 0) q.append("\thoras=").append(horas);
+            List<String> r = pedir(in, out, q.toString());
+            if (!r.get(0).startsWith("OK")) System.out.println(r.get(0));
+            else if (r.size() == 1) System.out.println("Sin resultados");
+            for (int i = 1; i < r.size(); i++) System.out.println(tarea(r.get(i)));
+        }
+
+        // consola: cada linea es una peticion; los campos se pueden separar con | en vez de tabulador
+        private static void consola(BufferedReader in, PrintWriter out) throws IOException {
+            System.out.println("Comandos: ALTA|titulo|depto|urgencia[|fecha], COMPLETAR|id, ELIMINAR|id, DEP|a|b, SIGUIENTE, "
+                    + "CONSULTA[|depto=X][|urgencia=N][|pendientes][|limite=N], PING. Linea vacia = regresar al menu.");
+            while (true) {
+                System.out.print("> ");
+                if (!sc.hasNextLine()) return;
+                String linea = sc.nextLine().trim();
+                if (linea.isEmpty()) return;
+                List<String> r = pedir(in, out, linea.replace('|', '\t'));
+                System.out.println(r.get(0).replace('\t', ' '));
+                for (int i = 1; i < r.size(); i++) System.out.println("  " + r.get(i).replace('\t', ' '));
+            }
+        }
+
+        // manda una peticion y regresa la respuesta (con las lineas extra de CONSULTA)
+        private static List<String> pedir(BufferedReader in, PrintWriter out, String peticion) throws IOException {
+            out.println(peticion);
+            List<String> r = new ArrayList<>();
+            String linea = in.readLine();
+            if (linea == null) throw new IOException("el servidor cerro la conexion");
+            r.add(linea);
+            for (int n = lineasExtra(peticion, linea); n > 0; n--) {
+                if ((linea = in.readLine()) == null) throw new IOException("el servidor cerro la conexion");
+                r.add(linea);
+            }
+            return r;
+        }
+
+        private static void mostrar(List<String> r, String siOk) {
+            System.out.println(r.get(0).equals("OK") ? siOk : r.get(0));
+        }
+
+        // lo que escribe el usuario no puede traer separadores del protocolo
+        private static String campo(String s) {
+            return s.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ').trim();
+        }
+
+        // linea de tarea del protocolo, con la misma pinta que Tarea.toString()
+        private static String tarea(String linea) {
+            String[] c = linea.split("\t", -1);
+            if (c.length < 6) return linea;
+            return "[" + c[0] + "] " + c[1] + " (Dept: " + c[2] + ", urg: " + c[3] + ", fecha: " + c[4]
+                    + ", estado: " + (c[5].equals("1") ? "✔ done" : "pendiente") + ")";
+        }
+
+        // CONSULTA contesta "OK n" y luego n lineas
+        static int lineasExtra(String peticion, String respuesta) {
+            if (!peticion.trim().toUpperCase().startsWith("CONSULTA") || !respuesta.startsWith("OK ")) return 0;
+            return Integer.parseInt(respuesta.substring(3).trim());
+        }
+
+        // Varias conexiones, cada una con hasta "ventana" peticiones en vuelo (pipelining), durante
+        // unos segundos. Mezcla: 70% ALTA, 20% COMPLETAR de una que dio de alta, 8% SIGUIENTE,
+        // 2% CONSULTA. La latencia es de que se escribe la peticion a que llega su respuesta.
+        static void carga(String host, int puerto, int conexiones, int segundos, int ventana) {
+            Metricas.Histograma latencia = Metricas.histograma("carga.latencia", true);
+            LongAdder hechas = new LongAdder(), errores = new LongAdder();
+            long fin = System.nanoTime() + segundos * 1_000_000_000L;
+            List<Thread> hilos = new ArrayList<>();
+            long inicio = System.nanoTime();
+            for (int k = 0; k < conexiones; k++) {
+                int semilla = k;
+                Thread h = new Thread(() -> {
+                    try {
+                        unaConexion(host, puerto, ventana, fin, semilla, latencia, hechas, errores);
+                    } catch (IOException e) {
+                        System.out.println("Conexion " + semilla + ": " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "carga-" + k);
+                h.start();
+                hilos.add(h);
+            }
+            for (Thread h : hilos) {
+                try {
+                    h.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            double seg = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("%d peticiones en %.2f s: %.0f peticiones/s, %d errores%n",
+                    hechas.sum(), seg, hechas.sum() / seg, errores.sum());
+            System.out.printf("latencia p50=%.3f ms p99=%.3f ms p99.9=%.3f ms max=%.3f ms%n",
+                    latencia.percentil(50) / 1e6, latencia.percentil(99) / 1e6,
+                    latencia.percentil(99.9) / 1e6, latencia.max() / 1e6);
+        }
+
+        private static void unaConexion(String host, int puerto, int ventana, long fin, int semilla,
+                                        Metricas.Histograma latencia, LongAdder hechas, LongAdder errores)
+                throws IOException, InterruptedException {
+            try (Socket s = new Socket(host, puerto)) {
+                s.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+                Semaphore enVuelo = new Semaphore(ventana);
+                // por cada peticion en vuelo: cuando salio y que era (ALTA, CONSULTA u otra)
+                ConcurrentLinkedQueue<long[]> enviadas = new ConcurrentLinkedQueue<>();
+                ConcurrentLinkedQueue<Integer> altas = new ConcurrentLinkedQueue<>(); // ids para COMPLETAR
+                AtomicBoolean finLectura = new AtomicBoolean();
+                Thread lector = new Thread(() -> {
+                    try {
+                        String r;
+                        while ((r = in.readLine()) != null) {
+                            long[] e = enviadas.poll();
+                            if (e == null) break;
+                            for (long n = e[1] == CONSULTA && r.startsWith("OK ") ? Long.parseLong(r.substring(3)) : 0; n > 0; n--)
+                                in.readLine();
+                            latencia.desde(e[0]);
+                            hechas.increment();
+                            if (r.startsWith("ERR")) errores.increment();
+                            else if (e[1] == ALTA && altas.size() < 4096) altas.add(Integer.parseInt(r.substring(3)));
+                            enVuelo.release();
+                        }
+                    } catch (IOException | NumberFormatException e) {
+                        System.out.println("Lector " + semilla + ": " + e.getMessage());
+                    } finally {
+                        finLectura.set(true);
+                        enVuelo.release(ventana); // que el escritor no se quede esperando
+                    }
+                }, "carga-lector-" + semilla);
+                lector.start();
+                Random r = new Random(semilla);
+                String[] deptos = {"TI", "Marketing", "Finanzas", "RH", "Ventas"};
+                int sinFlush = 0;
+                while (System.nanoTime() < fin && !finLectura.get()) {
+                    if (!enVuelo.tryAcquire()) {
+                        out.flush(); // lo que llevamos acumulado, y ya luego a esperar
+                        sinFlush = 0;
+                        enVuelo.acquire();
+                    }
+                    int dado = r.nextInt(100);
+                    String linea;
+                    long tipo = OTRA;
+                    Integer id = dado >= 70 && dado < 90 ? altas.poll() : null;
+                    if (id != null) linea = "COMPLETAR\t" + id;
+                    else if (dado >= 90 && dado < 98) linea = "SIGUIENTE";
+                    else if (dado >= 98) {
+                        linea = "CONSULTA\turgencia=5\tpendientes\tlimite=10";
+                        tipo = CONSULTA;
+                    } else {
+                        linea = "ALTA\tCarga " + semilla + "\t" + deptos[r.nextInt(deptos.length)] + "\t" + (1 + r.nextInt(5));
+                        tipo = ALTA;
+                    }
+                    enviadas.add(new long[]{System.nanoTime(), tipo});
+                    out.write(linea);
+                    out.write('\n');
+                    if (++sinFlush >= 64) {
+                        out.flush();
+                        sinFlush = 0;
+                    }
+                }
+                out.flush();
+                s.shutdownOutput(); // el servidor contesta lo que falta y cierra
+                lector.join();
+            }
+        }
+    }
+
+    // ====== Metricas (contadores, histogramas y medidores) ======
+    // Registro unico por nombre. Lo que se llama en cada operacion no aparta memoria: los
+    // contadores son LongAdder (una celda por hilo que compite) y los histogramas un arreglo
+    // fijo de cubetas log-lineales estilo HDR: 32 sub-cubetas por cada potencia de 2, o sea
+    // ~3% de error relativo de 1 ns hasta Long.MAX_VALUE. Se ven por JMX (tareas:type=Metricas)
+    // y con volcar() en texto (opcion 15 del menu).
+    static class Metricas {
+        private static final ConcurrentSkipListMap<String, Object> REGISTRO = new ConcurrentSkipListMap<>();
+
+        static final class Contador {
+            private final LongAdder valor = new LongAdder();
+
+            void inc() { valor.increment(); }
+            void add(long n) { valor.add(n); }
+            long valor() { return valor.sum(); }
+        }
+
+        static final class Medidor {
+            private final LongSupplier fuente;
+
+            Medidor(LongSupplier fuente) { this.fuente = fuente; }
+
+            long valor() { return fuente.getAsLong(); }
+        }
+
+        static final class Histograma {
+            private static final int SUB = 5; // 2^5 sub-cubetas por potencia de 2
+            private static final int CUBETAS = (64 - SUB + 1) << SUB;
+            private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+            private final LongAdder total = new LongAdder();
+            private final LongAdder suma = new LongAdder();
+            private final AtomicLong max = new AtomicLong();
+            final boolean nanos; // true = duraciones en ns (se muestran como ms/us)
+
+            Histograma(boolean nanos) { this.nanos = nanos; }
+
+            void registrar(long v) {
+                if (v < 0) v = 0;
+                cuentas.incrementAndGet(cubeta(v));
+                total.increment();
+                suma.add(v);
+                if (v > max.get()) max.accumulateAndGet(v, Math::max);
+            }
+
+            // duracion desde un System.nanoTime() anterior
+            void desde(long inicioNs) { registrar(System.nanoTime() - inicioNs); }
+
+            long cuenta() { return total.sum(); }
+            long max() { return max.get(); }
+            double media() {
+                long n = total.sum();
+                return n == 0 ? 0 : (double) suma.sum() / n;
+            }
+
+            // valor mas alto de la cubeta donde cae el percentil p (0-100), nunca mas que el max
+            long percentil(double p) {
+                long n = 0;
+                for (int c = 0; c < CUBETAS; c++) n += cuentas.get(c);
+                if (n == 0) return 0;
+                long objetivo = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+                long acum = 0;
+                for (int c = 0; c < CUBETAS; c++) {
+                    acum += cuentas.get(c);
+                    if (acum >= objetivo) return Math.min(c + 1 < CUBETAS ? inicio(c + 1) - 1 : Long.MAX_VALUE, max.get());
+                }
+                return max.get();
+            }
+
+            static int cubeta(long v) {
+                if (v < (1L << SUB)) return (int) v; // los chiquitos van exactos
+                int exp = 63 - Long.numberOfLeadingZeros(v);
+                int sub = (int) (v >>> (exp - SUB)) & ((1 << SUB) - 1);
+                return ((exp - SUB + 1) << SUB) + sub;
+            }
+
+            static long inicio(int c) {
+                if (c < (1 << SUB)) return c;
+                int exp = (c >> SUB) + SUB - 1;
+                return (1L << exp) + ((long) (c & ((1 << SUB) - 1)) << (exp - SUB));
+            }
+        }
+
+        // un histograma por clave (ej. por depto); solo el primero de cada clave aparta memoria
+        static final class PorClave {
+            private final String prefijo;
+            private final boolean nanos;
+            private final ConcurrentHashMap<String, Histograma> mapa = new ConcurrentHashMap<>();
+
+            PorClave(String prefijo, boolean nanos) {
+                this.prefijo = prefijo;
+                this.nanos = nanos;
+            }
+
+            Histograma de(String clave) {
+                Histograma h = mapa.get(clave);
+                return h != null ? h : mapa.computeIfAbsent(clave, k -> histograma(prefijo + "." + k, nanos));
+            }
+        }
+
+        static Contador contador(String nombre) {
+            return (Contador) REGISTRO.computeIfAbsent(nombre, k -> new Contador());
+        }
+
+        static Histograma histograma(String nombre, boolean nanos) {
+            return (Histograma) REGISTRO.computeIfAbsent(nombre, k -> new Histograma(nanos));
+        }
+
+        static void medidor(String nombre, LongSupplier fuente) {
+            REGISTRO.put(nombre, new Medidor(fuente));
+        }
+
+        // todo en texto, un renglon por metrica y en orden alfabetico
+        static String volcar() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Object> e : REGISTRO.entrySet()) {
+                Object m = e.getValue();
+                sb.append(String.format("%-36s ", e.getKey()));
+                if (m instanceof Contador) sb.append(((Contador) m).valor());
+                else if (m instanceof Medidor) sb.append(((Medidor) m).valor());
+                else {
+                    Histograma h = (Histograma) m;
+                    sb.append("n=").append(h.cuenta())
+                            .append(" media=").append(formato(h, (long) h.media()))
+                            .append(" p50=").append(formato(h, h.percentil(50)))
+                            .append(" p99=").append(formato(h, h.percentil(99)))
+                            .append(" p99.9=").append(formato(h, h.percentil(99.9)))
+                            .append(" max=").append(formato(h, h.max()));
+                }
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+
+        private static String formato(Histograma h, long v) {
+            if (!h.nanos) return Long.toString(v);
+            if (v >= 1_000_000) return String.format("%.2fms", v / 1e6);
+            if (v >= 1_000) return String.format("%.1fus", v / 1e3);
+            return v + "ns";
+        }
+
+        // JMX: cada contador/medidor es un atributo Long; cada histograma da .cuenta .p50 .p99 .p999 .max
+        static void registrarJmx() {
+            try {
+                ObjectName nombre = new ObjectName("tareas:type=Metricas");
+                MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+                if (!servidor.isRegistered(nombre)) servidor.registerMBean(new BeanMetricas(), nombre);
+            } catch (JMException e) {
+                System.out.println("Error registrando metricas en JMX: " + e.getMessage());
+            }
+        }
+
+        private static final class BeanMetricas implements DynamicMBean {
+            private static final String[] DE_HISTOGRAMA = {"cuenta", "p50", "p99", "p999", "max"};
+
+            @Override
+            public Object getAttribute(String atributo) throws AttributeNotFoundException {
+                Object m = REGISTRO.get(atributo);
+                if (m instanceof Contador) return ((Contador) m).valor();
+                if (m instanceof Medidor) return ((Medidor) m).valor();
+                int punto = atributo.lastIndexOf('.');
+                if (punto > 0 && REGISTRO.get(atributo.substring(0, punto)) instanceof Histograma) {
+                    Histograma h = (Histograma) REGISTRO.get(atributo.substring(0, punto));
+                    switch (atributo.substring(punto + 1)) {
+                        case "cuenta": return h.cuenta();
+                        case "p50": return h.percentil(50);
+                        case "p99": return h.percentil(99);
+                        case "p999": return h.percentil(99.9);
+                        case "max": return h.max();
+                        default: break;
+                    }
+                }
+                throw new AttributeNotFoundException(atributo);
+            }
+
+            @Override
+            public AttributeList getAttributes(String[] atributos) {
+                AttributeList l = new AttributeList();
+                for (String a : atributos) {
+                    try {
+                        l.add(new Attribute(a, getAttribute(a)));
+                    } catch (AttributeNotFoundException e) {
+                        // se omite, como pide la interfaz
+                    }
+                }
+                return l;
+            }
+
+            @Override
+            public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+                throw new AttributeNotFoundException("las metricas son de solo lectura: " + atributo.getName());
+            }
+
+            @Override
+            public AttributeList setAttributes(AttributeList atributos) { return new AttributeList(); }
+
+            @Override
+            public Object invoke(String accion, Object[] params, String[] firma) throws ReflectionException {
+                if (accion.equals("volcar")) return volcar();
+                throw new ReflectionException(new NoSuchMethodException(accion));
+            }
+
+            // se arma cada vez: las metricas por depto van apareciendo
+            @Override
+            public MBeanInfo getMBeanInfo() {
+                List<MBeanAttributeInfo> atributos = new ArrayList<>();
+                for (Map.Entry<String, Object> e : REGISTRO.entrySet()) {
+                    if (e.getValue() instanceof Histograma) {
+                        for (String s : DE_HISTOGRAMA)
+                            atributos.add(new MBeanAttributeInfo(e.getKey() + "." + s, "java.lang.Long",
+                                    e.getKey() + " " + s, true, false, false));
+                    } else {
+                        atributos.add(new MBeanAttributeInfo(e.getKey(), "java.lang.Long", e.getKey(), true, false, false));
+                    }
+                }
+                MBeanOperationInfo volcar = new MBeanOperationInfo("volcar", "todas las metricas en texto",
+                        new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO);
+                return new MBeanInfo(Metricas.class.getName(), "Metricas del sistema de tareas",
+                        atributos.toArray(new MBeanAttributeInfo[0]), null,
+                        new MBeanOperationInfo[]{volcar}, null);
+            }
+        }
+    }
+
+    // ====== Bitacora (write-ahead log) ======
+    // Cada cambio se anota al final de un archivo binario en lugar de reescribir todo el estado.
+    // Registro: [largo int][crc int][lsn long][tipo byte][datos...], el crc cubre lsn+tipo+datos.
+    // Los registros se juntan en un buffer y se mandan a disco con un solo fsync por lote
+    // (group commit): cuando se juntan syncCadaRegistros o cuando pasan syncCadaMs.
+    // Version 2: ALTA_TAREA trae creadaEn al final. Una bitacora de version 1 se reproduce tal cual
+    // y no se le agrega nada: hay que hacer checkpoint (versionVieja) y ya queda en la 2.
+    static class BitacoraWAL implements Closeable {
+        static final byte ALTA_TAREA = 1, COMPLETAR = 2, ELIMINAR = 3, DEPENDENCIA = 4,
+                EMPLEADO = 5, BAJA_EMPLEADO = 6, REPROGRAMAR = 7;
+        private static final int MAGIA = 0x5457414C; // "TWAL"
+        static final int VERSION = 2;
+        private static final int CABECERA = 8;       // magia + version
+        private static final int MAX_REGISTRO = 1 << 20;
+        private static final Metricas.Contador REGISTROS = Metricas.contador("bitacora.registros");
+        private static final Metricas.Histograma FSYNC = Metricas.histograma("bitacora.fsync", true);
+
+        // version: la de la cabecera del archivo, para saber que campos trae cada tipo
+        interface Aplicador { void aplicar(int version, byte tipo, DataInputStream datos) throws IOException; }
+        interface Snapshot { void escribir(long lsn) throws IOException; }
+
+        // ByteArrayOutputStream que nos deja ver su arreglo sin copiarlo
+        private static class Buffer extends ByteArrayOutputStream {
+            Buffer(int n) { super(n); }
+            byte[] arreglo() { return buf; }
+        }
+
+        private final FileChannel canal;
+        private final Buffer registro = new Buffer(256);
+        private final DataOutputStream out = new DataOutputStream(registro);
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer pendiente = ByteBuffer.allocate(64 * 1024); // anotado pero aun no en disco
+        private final int syncCadaRegistros;
+        private final int snapshotCada;
+        private int sinSync, desdeSnapshot;
+        private long lsn;
+        private boolean versionVieja; // la cabecera no es VERSION: nada se anota hasta el checkpoint
+        private final Thread sincronizador;
+        private volatile boolean cerrada;
+
+        BitacoraWAL(File archivo, long ultimoLsn, int syncCadaRegistros, long syncCadaMs, int snapshotCada)
+                throws IOException {
+            canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (canal.size() < CABECERA) {
+                escribirCabecera();
+            } else {
+                ByteBuffer cab = ByteBuffer.allocate(CABECERA);
+                while (cab.hasRemaining() && canal.read(cab, cab.position()) > 0) { }
+                int version = cab.getInt(4);
+                if (version > VERSION) {
+                    canal.close();
+                    throw new IOException("version de bitacora no soportada: " + version);
+                }
+                versionVieja = version < VERSION;
+            }
+            canal.position(canal.size());
+            this.lsn = ultimoLsn;
+            this.syncCadaRegistros = Math.max(1, syncCadaRegistros);
+            this.snapshotCada = snapshotCada;
+            if (syncCadaMs > 0) {
+                sincronizador = new Thread(() -> {
+                    while (!cerrada) {
+                        try {
+                            Thread.sleep(syncCadaMs);
+                            sincronizar();
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (IOException e) {
+                            System.out.println("Error sincronizando bitacora: " + e.getMessage());
+                        }
+                    }
+                }, "bitacora-sync");
+                sincronizador.setDaemon(true);
+                sincronizador.start();
+            } else sincronizador = null;
+        }
+
+        synchronized void altaTarea(Tarea t) throws IOException {
+            empezar(ALTA_TAREA, t.titulo, t.departamento);
+            out.writeInt(t.id);
+            out.writeUTF(t.titulo);
+            out.writeUTF(t.departamento);
+            out.writeByte(t.urgencia);
+            out.writeLong(t.fechaEntrega.getTime());
+            out.writeBoolean(t.completada);
+            out.writeLong(t.creadaEn);
+            terminar();
+        }
+
+        synchronized void completar(int id) throws IOException {
+            empezar(COMPLETAR);
+            out.writeInt(id);
+            terminar();
+        }
+
+        synchronized void eliminar(int id) throws IOException {
+            empezar(ELIMINAR);
+            out.writeInt(id);
+            terminar();
+        }
+
+        synchronized void dependencia(int tareaA, int tareaB) throws IOException {
+            empezar(DEPENDENCIA);
+            out.writeInt(tareaA);
+            out.writeInt(tareaB);
+            terminar();
+        }
+
+        synchronized void empleado(String nombre, String depto) throws IOException {
+            empezar(EMPLEADO, nombre, depto);
+            out.writeUTF(nombre);
+            out.writeUTF(depto);
+            terminar();
+        }
+
+        synchronized void bajaEmpleado(String nombre) throws IOException {
+            empezar(BAJA_EMPLEADO, nombre);
+            out.writeUTF(nombre);
+            terminar();
+        }
+
+        synchronized void reprogramar(int id, int urgencia, long fecha) throws IOException {
+            empezar(REPROGRAMAR);
+            out.writeInt(id);
+            out.writeByte(urgencia);
+            out.writeLong(fecha);
+            terminar();
+        }
+
+        // ya se juntaron suficientes cambios como para que convenga un snapshot
+        synchronized boolean tocaSnapshot() { return snapshotCada > 0 && desdeSnapshot >= snapshotCada; }
+
+        // manda a disco lo pendiente con un solo fsync
+        synchronized void sincronizar() throws IOException {
+            if (sinSync == 0) return;
+            long inicio = System.nanoTime();
+            pendiente.flip();
+            while (pendiente.hasRemaining()) canal.write(pendiente);
+            pendiente.clear();
+            canal.force(false);
+            sinSync = 0;
+            FSYNC.desde(inicio);
+        }
+
+        // escribe el snapshot con la bitacora bloqueada y luego la deja vacia:
+        // todo lo anotado hasta aqui ya esta dentro del snapshot
+        synchronized void checkpoint(Snapshot snapshot) throws IOException {
+            snapshot.escribir(lsn);
+            pendiente.clear();
+            sinSync = 0;
+            desdeSnapshot = 0;
+            if (versionVieja) {
+                escribirCabecera(); // lo de la version vieja ya quedo en el snapshot
+                versionVieja = false;
+            } else {
+                canal.truncate(CABECERA);
+                canal.force(true);
+            }
+            canal.position(CABECERA);
+        }
+
+        // true si el archivo es de una version anterior: pide un checkpoint antes de anotar
+        synchronized boolean versionVieja() { return versionVieja; }
+
+        private void escribirCabecera() throws IOException {
+            ByteBuffer cab = ByteBuffer.allocate(CABECERA).putInt(MAGIA).putInt(VERSION);
+            cab.flip();
+            canal.truncate(0);
+            canal.write(cab, 0);
+            canal.force(true);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (cerrada) return;
+            cerrada = true;
+            if (sincronizador != null) sincronizador.interrupt();
+            sincronizar();
+            canal.close();
+        }
+
+        // Los textos del registro se revisan antes: writeUTF no aguanta mas de 65535 bytes. El lsn
+        // se aparta aqui pero solo se cuenta en terminar(), asi un registro que truena a medias
+        // no deja un hueco en la numeracion.
+        private void empezar(byte tipo, String... textos) throws IOException {
+            if (cerrada) throw new IOException("bitacora cerrada");
+            if (versionVieja) throw new IOException("bitacora de version vieja: falta checkpoint");
+            for (String s : textos) {
+                long largo = largoUTF(s);
+                if (largo > 0xFFFF) throw new UTFDataFormatException("texto de " + largo + " bytes, el maximo es 65535");
+            }
+            registro.reset();
+            out.writeLong(lsn + 1);
+            out.writeByte(tipo);
+        }
+
+        // bytes que ocupa s con writeUTF (UTF-8 modificado: el caracter 0 va en dos)
+        static long largoUTF(String s) {
+            long n = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                n += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+            }
+            return n;
+        }
+
+        private void terminar() throws IOException {
+            int largo = registro.size();
+            crc.reset();
+            crc.update(registro.arreglo(), 0, largo);
+            if (pendiente.remaining() < largo + 8) {
+                sincronizarSinContar();
+                if (pendiente.capacity() < largo + 8) pendiente = ByteBuffer.allocate(largo + 8);
+            }
+            pendiente.putInt(largo).putInt((int) crc.getValue()).put(registro.arreglo(), 0, largo);
+            lsn++;
+            REGISTROS.inc();
+            desdeSnapshot++;
+            if (++sinSync >= syncCadaRegistros) sincronizar();
+        }
+
+        // buffer lleno: a disco sin esperar al fsync (ese lo hace el siguiente lote)
+        private void sincronizarSinContar() throws IOException {
+            pendiente.flip();
+            while (pendiente.hasRemaining()) canal.write(pendiente);
+            pendiente.clear();
+        }
+
+        // Relee la bitacora y aplica los registros con lsn > desdeLsn (los anteriores ya vienen
+        // en el snapshot). Si el final quedo a medias (se cayo escribiendo) se corta ahi.
+        static long reproducir(File archivo, long desdeLsn, Aplicador aplicador) throws IOException {
+            if (!archivo.exists()) return desdeLsn;
+            long ultimo = desdeLsn;
+            long valido = CABECERA;
+            try (FileChannel ch = FileChannel.open(archivo.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 1 << 16));
+                CRC32 c = new CRC32();
+                try {
+                    if (in.readInt() != MAGIA) throw new IOException("no es una bitacora valida: " + archivo);
+                    int version = in.readInt();
+                    if (version < 1 || version > VERSION)
+                        throw new IOException("version de bitacora no soportada: " + version);
+                    while (true) {
+                        int largo = in.readInt();
+                        int esperado = in.readInt();
+                        if (largo < 9 || largo > MAX_REGISTRO) break;
+                        byte[] datos = new byte[largo];
+                        in.readFully(datos);
+                        c.reset();
+                        c.update(datos, 0, largo);
+                        if ((int) c.getValue() != esperado) break;
+                        DataInputStream reg = new DataInputStream(new ByteArrayInputStream(datos));
+                        long l = reg.readLong();
+                        byte tipo = reg.readByte();
+                        if (l > ultimo) {
+                            aplicador.aplicar(version, tipo, reg);
+                            ultimo = l;
+                        }
+                        valido += 8 + largo;
+                    }
+                } catch (EOFException e) {
+                    // fin del archivo (o registro cortado)
+                }
+                if (ch.size() > valido) ch.truncate(valido);
+            }
+            return ultimo;
+        }
+    }
+
+    // ====== Snapshot binario por columnas ======
+    // En vez de serializacion de Java (lenta, reflexiva y riesgosa) el snapshot guarda
+    // arreglos primitivos: ids, urgencias y fechas (ms) tal cual, departamentos como un
+    // diccionario + indices, titulos como offsets + un solo bloque UTF-8 y el grafo en CSR.
+    // Se lee con un MappedByteBuffer: basicamente una pasada por el archivo.
+    //
+    //   [magia][version][lsn][nextId]
+    //   [n][ids int*n][urgencias byte*n][fechas long*n][creadas long*n][completada byte*n]
+    //   [diccionario deptos][depto int*n][offsets titulos int*(n+1)][bytes titulos]
+    //   [m][nombres empleados][depto int*m]
+    //   [v][nodos int*v][offsets int*(v+1)][deps int*aristas][magia fin]
+    // La version 1 no traia la columna de creadas (se leen como 0).
+    static class SnapshotBinario {
+        static final int MAGIA = 0x54534E50;     // "TSNP"
+        static final int MAGIA_FIN = 0x46494E21; // "FIN!"
+        static final int VERSION = 2;
+
+        static class Cargado {
+            long lsn;
+            BaseDatos db = new BaseDatos();
+            GrafoDependencias grafo = new GrafoDependencias();
+        }
+
+        static boolean esBinario(File f) throws IOException {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+                return f.length() >= 4 && in.readInt() == MAGIA;
+            }
+        }
+
+        static void escribir(File archivo, long lsn, BaseDatos db, GrafoDependencias grafo) throws IOException {
+            int n = db.size();
+            int[] ids = new int[n];
+            byte[] urg = new byte[n];
+            long[] fechas = new long[n];
+            long[] creadas = new long[n];
+            byte[] hecha = new byte[n];
+            int[] depto = new int[n];
+            int[] offTitulos = new int[n + 1];
+            ByteArrayOutputStream titulos = new ByteArrayOutputStream(n * 16);
+            LinkedHashMap<String, Integer> dic = new LinkedHashMap<>();
+            int[] fila = {0};
+            db.forEach(t -> {
+                int j = fila[0]++;
+                ids[j] = t.id;
+                urg[j] = (byte) t.urgencia;
+                fechas[j] = t.fechaEntrega.getTime();
+                creadas[j] = t.creadaEn;
+                hecha[j] = (byte) (t.completada ? 1 : 0);
+                depto[j] = dic.computeIfAbsent(t.departamento, k -> dic.size());
+                byte[] b = t.titulo.getBytes(StandardCharsets.UTF_8);
+                titulos.write(b, 0, b.length);
+                offTitulos[j + 1] = titulos.size();
+            });
+            int m = db.empleados.size();
+            String[] nombres = new String[m];
+            int[] deptoEmp = new int[m];
+            int i = 0;
+            for (Map.Entry<String, String> e : db.empleados.entrySet()) {
+                nombres[i] = e.getKey();
+                deptoEmp[i++] = dic.computeIfAbsent(e.getValue(), k -> dic.size());
+            }
+            int[] nodos = grafo.adj.nodos();
+            int v = nodos.length;
+            int[] offDeps = new int[v + 1];
+            int[] deps = new int[grafo.numAristas()];
+            int k = 0;
+            for (i = 0; i < v; i++) {
+                int g = grafo.adj.grado(nodos[i]);
+                System.arraycopy(grafo.adj.crudo(nodos[i]), 0, deps, k, g);
+                k += g;
+                offDeps[i + 1] = k;
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(archivo);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+                out.writeInt(MAGIA);
+                out.writeInt(VERSION);
+                out.writeLong(lsn);
+                out.writeInt(Tarea.NEXT_ID.get());
+                out.writeInt(n);
+                for (int x : ids) out.writeInt(x);
+                out.write(urg);
+                for (long x : fechas) out.writeLong(x);
+                for (long x : creadas) out.writeLong(x);
+                out.write(hecha);
+                out.writeInt(dic.size());
+                for (String s : dic.keySet()) escribirTexto(out, s);
+                for (int x : depto) out.writeInt(x);
+                for (int x : offTitulos) out.writeInt(x);
+                titulos.writeTo(out);
+                out.writeInt(m);
+                for (String s : nombres) escribirTexto(out, s);
+                for (int x : deptoEmp) out.writeInt(x);
+                out.writeInt(v);
+                for (int x : nodos) out.writeInt(x);
+                for (int x : offDeps) out.writeInt(x);
+                for (int x : deps) out.writeInt(x);
+                out.writeInt(MAGIA_FIN);
+                out.flush();
+                fos.getFD().sync();
+            }
+        }
+
+        static Cargado leer(File archivo) throws IOException {
+            try (FileChannel ch = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new IOException("snapshot de mas de 2 GB, no cabe en un solo mapeo");
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (buf.getInt() != MAGIA) throw new IOException("no es un snapshot binario: " + archivo);
+                int version = buf.getInt();
+                if (version < 1 || version > VERSION) throw new IOException("version de snapshot no soportada: " + version);
+                Cargado c = new Cargado();
+                c.lsn = buf.getLong();
+                Tarea.reservarId(buf.getInt() - 1);
+
+                int n = buf.getInt();
+                int[] ids = leerInts(buf, n);
+                byte[] urg = new byte[n];
+                buf.get(urg);
+                long[] fechas = new long[n];
+                buf.asLongBuffer().get(fechas);
+                buf.position(buf.position() + n * 8);
+                long[] creadas = new long[n];
+                if (version >= 2) {
+                    buf.asLongBuffer().get(creadas);
+                    buf.position(buf.position() + n * 8);
+                }
+                byte[] hecha = new byte[n];
+                buf.get(hecha);
+                String[] dic = new String[buf.getInt()];
+                for (int i = 0; i < dic.length; i++) dic[i] = leerTexto(buf);
+                int[] depto = leerInts(buf, n);
+                int[] offTitulos = leerInts(buf, n + 1);
+                byte[] titulos = new byte[offTitulos[n]];
+                buf.get(titulos);
+                for (int i = 0; i < n; i++) {
+                    String titulo = new String(titulos, offTitulos[i], offTitulos[i + 1] - offTitulos[i], StandardCharsets.UTF_8);
+                    Tarea t = new Tarea(ids[i], titulo, dic[depto[i]], urgenciaDeDisco(urg[i]), new Date(fechas[i]), hecha[i] != 0);
+                    t.creadaEn = creadas[i];
+                    c.db.addTarea(t);
+                }
+
+                int m = buf.getInt();
+                String[] nombres = new String[m];
+                for (int i = 0; i < m; i++) nombres[i] = leerTexto(buf);
+                int[] deptoEmp = leerInts(buf, m);
+                for (int i = 0; i < m; i++) c.db.addEmpleado(nombres[i], dic[deptoEmp[i]]);
+
+                int v = buf.getInt();
+                int[] nodos = leerInts(buf, v);
+                int[] offDeps = leerInts(buf, v + 1);
+                int[] deps = leerInts(buf, offDeps[v]);
+                for (int i = 0; i < v; i++) c.grafo.adj.cargar(nodos[i], deps, offDeps[i], offDeps[i + 1]);
+                c.grafo.reconstruirIndices();
+                if (buf.getInt() != MAGIA_FIN) throw new IOException("snapshot incompleto: " + archivo);
+                return c;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("snapshot corrupto: " + archivo, e);
+            }
+        }
+
+        private static int[] leerInts(ByteBuffer buf, int n) {
+            int[] a = new int[n];
+            buf.asIntBuffer().get(a);
+            buf.position(buf.position() + n * 4);
+            return a;
+        }
+
+        private static void escribirTexto(DataOutputStream out, String s) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        private static String leerTexto(ByteBuffer buf) {
+            byte[] b = new byte[buf.getInt()];
+            buf.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    // ====== Carga masiva (CSV / JSON lines) ======
+    // Archivos de cualquier tamaño en memoria acotada: este hilo lee lotes de lineas, un pool
+    // los parsea en paralelo y los lotes se entregan en el mismo orden del archivo (nunca hay
+    // mas de 2 lotes por hilo en vuelo). Un registro por linea:
+    //   tareas:        id,titulo,depto,urgencia,fecha,completada   (id vacio = se asigna uno)
+    //   empleados:     nombre,depto
+    //   dependencias:  tarea,requiere
+    // En .jsonl cada linea es un objeto plano con esos mismos campos. Fecha en ms desde 1970,
+    // ISO (2025-03-01T10:00:00Z) o solo dia (2025-03-01).
+    static class CargaMasiva {
+        static final int LOTE = 8192;
+        static final int UMBRAL_MASIVO = 1000; // con menos que esto se da de alta una por una
 
-        void add(Tarea t) { pq.offer(t); }
-        Tarea poll() { return pq.poll(); }
-        boolean isEmpty() { return pq.isEmpty(); }
-        List<Tarea> toList() { return new ArrayList<>(pq); }
-    }
+        enum Tipo { TAREAS, EMPLEADOS, DEPENDENCIAS }
 
-    // ====== Árbol binario para empleados ======
-    // Sirve para organizar empleados por nombre y buscarlos rapido (BST).
-    static class NodoEmpleado {
-        String nombre;
-        String departamento;
-        NodoEmpleado izq, der;
+        static final String[][] CAMPOS = {
+                {"id", "titulo", "depto", "urgencia", "fecha", "completada"},
+                {"nombre", "depto"},
+                {"tarea", "requiere"}};
 
-        NodoEmpleado(String n, String d) {
-            nombre = n;
-            departamento = d;
+        static class Resumen {
+            long cargadas, malas;
+            String primerError;
+
+            @Override
+            public String toString() {
+                return cargadas + " registros, " + malas + " lineas con error"
+                        + (primerError != null ? " (primera: " + primerError + ")" : "");
+            }
         }
-    }
 
-    static class ArbolEmpleados {
-        NodoEmpleado raiz;
+        private static class Lote<T> {
+            final List<T> registros;
+            int malas;
+            String primerError;
+
+            Lote(int n) { registros = new ArrayList<>(n); }
+        }
 
-        void insertar(String nombre, String depto) {
-            raiz = insertarRec(raiz, nombre, depto);
+        static String[] campos(Tipo tipo) { return CAMPOS[tipo.ordinal()]; }
+
+        static boolean esJson(File f) {
+            String n = f.getName().toLowerCase();
+            return n.endsWith(".jsonl") || n.endsWith(".json") || n.endsWith(".ndjson");
         }
 
-        private NodoEmpleado insertarRec(NodoEmpleado actual, String nombre, String depto) {
-            if (actual == null) return new NodoEmpleado(nombre, depto);
-            if (nombre.compareToIgnoreCase(actual.nombre) < 0)
-                actual.izq = insertarRec(actual.izq, nombre, depto);
-            else
-                actual.der = insertarRec(actual.der, nombre, depto);
-            return actual;
+        // vale la pena reconstruir todo de un jalon en vez de dar de alta una por una?
+        static boolean esMasiva(long nuevos, long existentes) {
+            return nuevos >= UMBRAL_MASIVO && nuevos * 8 >= existentes;
         }
 
-        boolean buscar(String nombre) {
-            return buscarRec(raiz, nombre);
+        // lee el archivo y le pasa a 'aplicar' los registros ya convertidos, lote por lote y en orden
+        static <T> Resumen leer(File f, Tipo tipo, Function<String[], T> convertir, Consumer<List<T>> aplicar)
+                throws IOException {
+            boolean json = esJson(f);
+            String[] nombres = campos(tipo);
+            int hilos = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ExecutorService pool = Executors.newFixedThreadPool(hilos, r -> {
+                Thread h = new Thread(r, "carga-masiva");
+                h.setDaemon(true);
+                return h;
+            });
+            ArrayDeque<Future<Lote<T>>> enVuelo = new ArrayDeque<>();
+            Resumen res = new Resumen();
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+                List<String> lineas = new ArrayList<>(LOTE);
+                long numero = 0;
+                String linea;
+                while ((linea = in.readLine()) != null) {
+                    numero++;
+                    if (numero == 1) {
+                        if (linea.startsWith("\uFEFF")) linea = linea.substring(1);
+                        if (!json && esEncabezado(linea, nombres)) continue;
+                    }
+                    lineas.add(linea);
+                    if (lineas.size() == LOTE) {
+                        enVuelo.add(enviar(pool, lineas, numero - lineas.size() + 1, json, nombres, convertir));
+                        lineas = new ArrayList<>(LOTE);
+                        if (enVuelo.size() >= 2 * hilos) entregar(enVuelo.poll(), aplicar, res);
+                    }
+                }
+                if (!lineas.isEmpty())
+                    enVuelo.add(enviar(pool, lineas, numero - lineas.size() + 1, json, nombres, convertir));
+                while (!enVuelo.isEmpty()) entregar(enVuelo.poll(), aplicar, res);
+            } finally {
+                pool.shutdownNow();
+            }
+            return res;
         }
 
-        private boolean buscarRec(NodoEmpleado actual, String nombre) {
-            if (actual == null) return false;
-            if (actual.nombre.equalsIgnoreCase(nombre)) return true;
-            return nombre.compareToIgnoreCase(actual.nombre) < 0
-                    ? buscarRec(actual.izq, nombre)
-                    : buscarRec(actual.der, nombre);
+        private static <T> Future<Lote<T>> enviar(ExecutorService pool, List<String> lineas, long inicio,
+                                                  boolean json, String[] nombres, Function<String[], T> convertir) {
+            return pool.submit(() -> {
+                Lote<T> l = new Lote<>(lineas.size());
+                for (int i = 0; i < lineas.size(); i++) {
+                    String s = lineas.get(i);
+                    if (s.isBlank()) continue;
+                    try {
+                        l.registros.add(convertir.apply(json ? partirJson(s, nombres) : partirCsv(s, nombres.length)));
+                    } catch (RuntimeException e) {
+                        if (l.malas++ == 0) l.primerError = "linea " + (inicio + i) + ": " + e.getMessage();
+                    }
+                }
+                return l;
+            });
         }
 
-        void mostrarInOrder() { mostrarRec(raiz); }
-        private void mostrarRec(NodoEmpleado n) {
-            if (n != null) {
-                mostrarRec(n.izq);
-                System.out.println("Empleado: " + n.nombre + " (Depto: " + n.departamento + ")");
-                mostrarRec(n.der);
+        private static <T> void entregar(Future<Lote<T>> f, Consumer<List<T>> aplicar, Resumen res) throws IOException {
+            Lote<T> l;
+            try {
+                l = f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("carga interrumpida");
+            } catch (ExecutionException e) {
+                throw new IOException("fallo al parsear: " + e.getCause(), e.getCause());
             }
+            res.cargadas += l.registros.size();
+            res.malas += l.malas;
+            if (res.primerError == null) res.primerError = l.primerError;
+            aplicar.accept(l.registros);
         }
-    }
 
-    // ====== HashMap para tareas y empleados ======
-    static class BaseDatos implements Serializable {
-        private static final long serialVersionUID = 1L;
-        HashMap<Integer, Tarea> tareas = new HashMap<>();
-        HashMap<String, String> empleados = new HashMap<>();
+        private static boolean esEncabezado(String linea, String[] nombres) {
+            int coma = linea.indexOf(',');
+            String primero = (coma < 0 ? linea : linea.substring(0, coma)).trim();
+            return primero.equalsIgnoreCase(nombres[0]);
+        }
 
-        void addTarea(Tarea t) { tareas.put(t.id, t); }
-        void addEmpleado(String nombre, String depto) { empleados.put(nombre, depto); }
+        // ---- conversiones (corren en el pool, no tocan estado global) ----
 
-        Tarea getTarea(int id) { return tareas.get(id); }
-        String getEmpleado(String nombre) { return empleados.get(nombre); }
+        // id 0 = sin id, se asigna al aplicar para que salgan en el orden del archivo
+        static Tarea tarea(String[] c) {
+            int id = vacio(c[0]) ? 0 : Integer.parseInt(c[0].trim());
+            if (id < 0) throw new IllegalArgumentException("id negativo: " + id);
+            String titulo = requerido(c[1], "titulo");
+            String depto = requerido(c[2], "depto").trim();
+            int urg = Integer.parseInt(requerido(c[3], "urgencia").trim());
+            if (urg < 1 || urg > 5) throw new IllegalArgumentException("urgencia fuera de 1-5: " + urg);
+            // sin fecha: igual que addTask(), tantos dias como urgencia
+            Date fecha = vacio(c[4]) ? new Date(System.currentTimeMillis() + urg * 86400000L) : fecha(c[4].trim());
+            Tarea t = new Tarea(id, titulo, depto, urg, fecha, siNo(c[5]));
+            t.creadaEn = System.currentTimeMillis();
+            return t;
+        }
 
-        void mostrarTareas() { 
-            if (tareas.isEmpty()) {
-                System.out.println("No hay tareas en la base de datos.");
-                return;
-            }
-            tareas.values().forEach(System.out::println); 
+        static String[] empleado(String[] c) {
+            return new String[]{requerido(c[0], "nombre").trim(), requerido(c[1], "depto").trim()};
         }
-    }
 
-    // ====== Gestor de ordenamiento y búsqueda ======
-    // Aqui aplicamos "divide y vencerás" con búsqueda binaria y ordenamientos.
-    static class GestorOrdenamiento {
-        List<Tarea> lista;
+        static int[] dependencia(String[] c) {
+            return new int[]{Integer.parseInt(requerido(c[0], "tarea").trim()),
+                    Integer.parseInt(requerido(c[1], "requiere").trim())};
+        }
 
-        GestorOrdenamiento(Collection<Tarea> tareas) {
-            lista = new ArrayList<>(tareas);
+        static Date fecha(String s) {
+            if (s.chars().allMatch(ch -> ch == '-' || Character.isDigit(ch)) && s.indexOf('-', 1) < 0)
+                return new Date(Long.parseLong(s));
+            if (s.length() == 10) // solo el dia, a medianoche local
+                return Date.from(java.time.LocalDate.parse(s).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
+            return Date.from(java.time.Instant.parse(s));
         }
 
-        void ordenarPorUrgencia() {
-            // Orden descendente por urgencia (5 -> 1)
-            lista.sort((a, b) -> Integer.compare(b.urgencia, a.urgencia));
+        private static boolean siNo(String s) {
+            if (vacio(s)) return false;
+            s = s.trim();
+            return s.equalsIgnoreCase("true") || s.equals("1") || s.equalsIgnoreCase("si") || s.equalsIgnoreCase("s");
         }
 
-        void ordenarPorFecha() {
-            // Orden ascendente por fecha (antes primero)
-            lista.sort(Comparator.comparing(t -> t.fechaEntrega));
+        private static boolean vacio(String s) { return s == null || s.isBlank(); }
+
+        private static String requerido(String s, String campo) {
+            if (vacio(s)) throw new IllegalArgumentException("falta " + campo);
+            return s;
         }
 
-        // búsqueda binaria por id (divide y vencerás)
-        Tarea buscarPorID(int id) {
-            lista.sort(Comparator.comparingInt(t -> t.id));
-            int izq = 0, der = lista.size() - 1;
-            while (izq <= der) {
-                int mid = (izq + der) / 2;
-                if (lista.get(mid).id == id) return lista.get(mid);
-                if (lista.get(mid).id < id) izq = mid + 1;
-                else der = mid - 1;
+        // ---- CSV: comas, comillas dobles ("" adentro = una comilla); sin saltos de linea dentro ----
+        static String[] partirCsv(String linea, int n) {
+            String[] out = new String[n];
+            StringBuilder sb = new StringBuilder();
+            int campo = 0;
+            boolean comillas = false;
+            for (int i = 0; i < linea.length(); i++) {
+                char c = linea.charAt(i);
+                if (comillas) {
+                    if (c != '"') sb.append(c);
+                    else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else comillas = false;
+                } else if (c == '"') comillas = true;
+                else if (c == ',') {
+                    if (campo < n) out[campo] = sb.toString();
+                    campo++;
+                    sb.setLength(0);
+                } else sb.append(c);
             }
-            return null;
+            if (comillas) throw new IllegalArgumentException("comillas sin cerrar");
+            if (campo >= n) throw new IllegalArgumentException("sobran campos (se esperaban " + n + ")");
+            out[campo] = sb.toString();
+            return out;
         }
 
-        void mostrar() { 
-            if (lista.isEmpty()) {
-                System.out.println("lista vacia.");
-                return;
+        // ---- JSON lines: un objeto plano por linea, valores texto/numero/true/false/null ----
+        static String[] partirJson(String linea, String[] nombres) {
+            String[] out = new String[nombres.length];
+            int[] i = {saltarBlancos(linea, 0)};
+            esperar(linea, i, '{');
+            if (linea.charAt(saltar(linea, i)) == '}') return out;
+            while (true) {
+                saltar(linea, i);
+                String clave = leerTexto(linea, i);
+                saltar(linea, i);
+                esperar(linea, i, ':');
+                saltar(linea, i);
+                String valor;
+                if (i[0] < linea.length() && linea.charAt(i[0]) == '"') valor = leerTexto(linea, i);
+                else {
+                    int ini = i[0];
+                    while (i[0] < linea.length() && ",} \t".indexOf(linea.charAt(i[0])) < 0) i[0]++;
+                    valor = linea.substring(ini, i[0]);
+                    if (valor.isEmpty()) throw new IllegalArgumentException("falta valor de " + clave);
+                    if (valor.equals("null")) valor = null;
+                }
+                for (int k = 0; k < nombres.length; k++) if (nombres[k].equals(clave)) out[k] = valor;
+                char c = linea.charAt(saltar(linea, i));
+                i[0]++;
+                if (c == '}') return out;
+                if (c != ',') throw new IllegalArgumentException("se esperaba , o } en la posicion " + (i[0] - 1));
             }
-            lista.forEach(System.out::println); 
         }
-    }
 
-    // ====== Grafo de dependencias ======
-    // Representa dependencias: si A depende de B, entonces no hacer A hasta B.
-    static class GrafoDependencias implements Serializable {
-        private static final long serialVersionUID = 1L;
-        Map<Integer, List<Integer>> adj = new HashMap<>();
+        private static int saltarBlancos(String s, int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return i;
+        }
 
-        void addDep(int tareaA, int tareaB) {
-            adj.computeIfAbsent(tareaA, k -> new ArrayList<>()).add(tareaB);
+        private static int saltar(String s, int[] i) {
+            i[0] = saltarBlancos(s, i[0]);
+            if (i[0] >= s.length()) throw new IllegalArgumentException("JSON incompleto");
+            return i[0];
         }
 
-        void mostrar(Map<Integer, Tarea> tareas) {
-            if (adj.isEmpty()) {
-                System.out.println("No hay dependencias registradas.");
+        private static void esperar(String s, int[] i, char c) {
+            if (i[0] >= s.length() || s.charAt(i[0]) != c)
+                throw new IllegalArgumentException("se esperaba " + c + " en la posicion " + i[0]);
+            i[0]++;
+        }
+
+        private static String leerTexto(String s, int[] i) {
+            esperar(s, i, '"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (i[0] >= s.length()) throw new IllegalArgumentException("texto sin cerrar");
+                char c = s.charAt(i[0]++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (i[0] >= s.length()) throw new IllegalArgumentException("escape incompleto");
+                char e = s.charAt(i[0]++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i[0] + 4 > s.length()) throw new IllegalArgumentException("escape \\u incompleto");
+                        sb.append((char) Integer.parseInt(s.substring(i[0], i[0] + 4), 16));
+                        i[0] += 4;
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
+        }
+
+        // ---- escritura: una linea por registro, texto escapado segun el formato ----
+        static void encabezado(PrintWriter out, boolean json, Tipo tipo) {
+            if (!json) out.println(String.join(",", campos(tipo)));
+        }
+
+        // los String van entre comillas en JSON; numeros y booleanos tal cual
+        static void escribir(PrintWriter out, boolean json, Tipo tipo, Object... valores) {
+            String[] nombres = campos(tipo);
+            StringBuilder sb = new StringBuilder(64);
+            if (json) sb.append('{');
+            for (int k = 0; k < valores.length; k++) {
+                if (k > 0) sb.append(',');
+                Object v = valores[k];
+                if (json) {
+                    sb.append('"').append(nombres[k]).append("\":");
+                    if (v instanceof String) escaparJson(sb, (String) v);
+                    else sb.append(v);
+                } else if (v instanceof String) escaparCsv(sb, (String) v);
+                else sb.append(v);
+            }
+            if (json) sb.append('}');
+            out.println(sb);
+        }
+
+        static String fechaIso(Date d) { return d.toInstant().toString(); }
+
+        private static void escaparCsv(StringBuilder sb, String s) {
+            boolean comillas = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0
+                    || (!s.isEmpty() && (Character.isWhitespace(s.charAt(0)) || Character.isWhitespace(s.charAt(s.length() - 1))));
+            if (!comillas) {
+                sb.append(s);
                 return;
             }
-            for (Map.Entry<Integer, List<Integer>> entry : adj.entrySet()) {
-                Tarea origenT = tareas.get(entry.getKey());
-                String origen = origenT != null ? origenT.titulo : ("ID " + entry.getKey());
-                for (int dep : entry.getValue()) {
-                    Tarea destinoT = tareas.get(dep);
-                    String destino = destinoT != null ? destinoT.titulo : ("ID " + dep);
-                    System.out.println("La tarea [" + origen + "] depende de [" + destino + "]");
-                }
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                // un salto de linea romperia el "un registro por linea", se escribe como espacio
+                if (c == '\n' || c == '\r') sb.append(' ');
+                else if (c == '"') sb.append("\"\"");
+                else sb.append(c);
             }
+            sb.append('"');
         }
 
-        // util: obtener lista de dependencias de una tarea
-        List<Integer> getDeps(int tareaId) {
-            return adj.getOrDefault(tareaId, Collections.emptyList());
+        private static void escaparJson(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                }
+            }
+            sb.append('"');
         }
     }
 
     // ====== Variables globales ======
     static ColaPrioridad cola = new ColaPrioridad();
+    static Planificador planificador = new Planificador();
+    static GestorOrdenamiento gestor = new GestorOrdenamiento();
+    static IndiceTexto indiceTexto = new IndiceTexto();
+    static BitacoraWAL wal; // null mientras se carga/reproduce (para no volver a anotar)
     static ArbolEmpleados arbol = new ArbolEmpleados();
     static BaseDatos db = new BaseDatos();
     static GrafoDependencias grafo = new GrafoDependencias();
+    // tick y anticipacion del aviso "por vencer", configurables con -D
+    static final long VENC_TICK_MS = Long.getLong("tareas.vencimientos.tickMs", 1000);
+    static final long VENC_AVISO_MS = Long.getLong("tareas.vencimientos.avisoHoras", 24) * 3600000L;
+    static RuedaVencimientos vencimientos = new RuedaVencimientos(System.currentTimeMillis(), VENC_TICK_MS, VENC_AVISO_MS);
     static Scanner sc = new Scanner(System.in);
 
-    // persistencia: archivo para guardar base de datos y grafo
-    static final String ARCHIVO_DB = "tareas_db.ser";
-    static final String ARCHIVO_GRAFO = "tareas_grafo.ser";
+    // metricas de las operaciones (ver Metricas); los medidores se registran en registrarMedidores()
+    static final Metricas.Contador M_ALTAS = Metricas.contador("tareas.altas");
+    static final Metricas.Contador M_COMPLETADAS = Metricas.contador("tareas.completadas");
+    static final Metricas.Contador M_ELIMINADAS = Metricas.contador("tareas.eliminadas");
+    static final Metricas.Contador M_DEPS = Metricas.contador("grafo.dependencias");
+    static final Metricas.Contador M_DEPS_RECHAZADAS = Metricas.contador("grafo.dependencias_rechazadas");
+    static final Metricas.Histograma M_FANOUT = Metricas.histograma("grafo.fanout", false); // cuantas esperan al requisito
+    static final Metricas.Histograma M_GUARDAR = Metricas.histograma("persistencia.guardar", true);
+    static final Metricas.Histograma M_CARGAR = Metricas.histograma("persistencia.cargar", true);
+    static final Metricas.Histograma M_BUSQUEDA = Metricas.histograma("texto.busqueda", true);
+    static final Metricas.Histograma M_REPORTE = Metricas.histograma("reportes.resumen", true);
+    static final Metricas.Contador M_VENCIDAS = Metricas.contador("vencimientos.vencidas");
+    static final Metricas.Contador M_POR_VENCER = Metricas.contador("vencimientos.por_vencer");
+    // de creada a completada, en ms, uno por depto
+    static final Metricas.PorClave M_HASTA_COMPLETAR = new Metricas.PorClave("tareas.hasta_completar_ms", false);
+
+    // persistencia: snapshot (db + grafo juntos) y bitacora con los cambios posteriores.
+    // Van en el directorio actual o en -Dtareas.dir=... (los benchmarks usan uno temporal)
+    static final String DIR_DATOS = System.getProperty("tareas.dir", "");
+    static final String ARCHIVO_SNAPSHOT = Paths.get(DIR_DATOS, "tareas.snap").toString();
+    static final String ARCHIVO_WAL = Paths.get(DIR_DATOS, "tareas.wal").toString();
+    // formato viejo (dos archivos con serializacion de Java), solo se leen para migrar
+    static final String ARCHIVO_DB = Paths.get(DIR_DATOS, "tareas_db.ser").toString();
+    static final String ARCHIVO_GRAFO = Paths.get(DIR_DATOS, "tareas_grafo.ser").toString();
+    // lotes de fsync y cada cuanto se hace snapshot, configurables con -D
+    static final int WAL_SYNC_REGISTROS = Integer.getInteger("tareas.wal.syncRegistros", 32);
+    static final int WAL_SYNC_MS = Integer.getInteger("tareas.wal.syncMs", 20);
+    static final int SNAPSHOT_CADA = Integer.getInteger("tareas.snapshotCada", 10000);
+    static final int PUERTO = 7070; // modo red
+    static final String ARCHIVO_CANDADO = Paths.get(DIR_DATOS, "tareas.lock").toString();
+    static FileLock candado; // mientras este proceso es el dueño de los datos (tomarDatos)
 
     // ====== MAIN ======
     public static void main(String[] args) {
+        // java tareas.SistemaTareasAvanzado --convertir [tareas_db.ser] [tareas_grafo.ser]
+        if (args.length > 0 && args[0].equals("--convertir")) {
+            if (!tomarDatos()) return;
+            convertirLegado(args.length > 1 ? args[1] : ARCHIVO_DB, args.length > 2 ? args[2] : ARCHIVO_GRAFO);
+            return;
+        }
+        // java tareas.SistemaTareasAvanzado --demo-ejecutor [n]   (corre n tareas cortas y mide)
+        if (args.length > 0 && args[0].equals("--demo-ejecutor")) {
+            demoEjecutor(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            return;
+        }
+        // java -Xmx8g tareas.SistemaTareasAvanzado --bench-memoria [n1 n2 ...]   (default 1M y 10M)
+        if (args.length > 0 && args[0].equals("--bench-memoria")) {
+            benchMemoria(args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"1000000", "10000000"});
+            return;
+        }
+
+        // java tareas.SistemaTareasAvanzado --importar|--exportar <tareas|empleados|dependencias> <archivo>
+        if (args.length > 2 && (args[0].equals("--importar") || args[0].equals("--exportar"))) {
+            CargaMasiva.Tipo tipo;
+            try {
+                tipo = CargaMasiva.Tipo.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Tipo invalido: " + args[1]);
+                return;
+            }
+            if (!tomarDatos() || !cargarEstado()) return;
+            if (args[0].equals("--importar")) importar(tipo, new File(args[2]));
+            else exportar(tipo, new File(args[2]));
+            cerrarBitacora();
+            return;
+        }
+
+        // java tareas.SistemaTareasAvanzado --servidor [puerto]           (modo red, ver ServidorTareas)
+        // java tareas.SistemaTareasAvanzado --cliente [host] [puerto]    (el menu contra el servidor)
+        // java tareas.SistemaTareasAvanzado --carga [host] [puerto] [conexiones] [segundos] [ventana]
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            servidor(args.length > 1 ? Integer.parseInt(args[1]) : PUERTO);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--cliente")) {
+            ClienteTareas.menu(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : PUERTO);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--carga")) {
+            ClienteTareas.carga(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : PUERTO,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 8, args.length > 4 ? Integer.parseInt(args[4]) : 10,
+                    args.length > 5 ? Integer.parseInt(args[5]) : 128);
+            return;
+        }
+
+        // si un --servidor ya tiene los datos, este menu no los toca (hay que entrar con --cliente)
+        if (!tomarDatos()) return;
+        registrarMedidores();
+        Metricas.registrarJmx();
+
         // al arrancar intentamos cargar estado previo si existe (persistencia)
-        cargarEstado();
+        if (!cargarEstado()) return;
 
         // seed demo (si no hay nada cargado, esto mete ejemplos)
-        if (db.tareas.isEmpty()) seedDemo();
+        if (db.isEmpty()) seedDemo();
 
         boolean salir = false;
         while (!salir) {
+            revisarVencimientos();
             showMenu();
             String opt = sc.nextLine().trim();
             switch (opt) {
@@ -240,8 +4255,16 @@ public class SistemaTareasAvanzado {
                 case "8": eliminarTarea(); break;            // eliminar tarea (nueva)
                 case "9": listarTodasLasTareas(); break;     // listar todo (nueva)
                 case "10": guardarEstado(); break;           // guardar manual (nueva)
+                case "11": siguienteTareaLista(); break;     // siguiente accionable (planificador)
+                case "12": consultarTareas(); break;         // consulta con filtros (indices)
+                case "13": reprogramarTareaMenu(); break;    // cambiar urgencia / fecha
+                case "14": importarExportarMenu(); break;    // carga masiva / exportar
+                case "15": System.out.print(Metricas.volcar()); break; // metricas en texto
+                case "16": vencimientosMenu(); break;        // vencidas y por vencer
+                case "17": reportesMenu(); break;            // reportes por depto (en paralelo)
                 case "0":                                      // salir (guarda antes)
                     guardarEstado();
+                    cerrarBitacora();
                     salir = true;
                     break;
                 default: System.out.println("Opcion invalida\n");
@@ -250,6 +4273,36 @@ public class SistemaTareasAvanzado {
         System.out.println("Gracias por usar Tareas SA de CV... vuelve pronto a sufrir con mas chambas jeje");
     }
 
+    // modo red: el hilo principal se vuelve el motor del servidor; con Ctrl+C se guarda y se cierra
+    static void servidor(int puerto) {
+        if (!tomarDatos()) return;
+        registrarMedidores();
+        Metricas.registrarJmx();
+        if (!cargarEstado()) return;
+        ServidorTareas srv;
+        try {
+            srv = new ServidorTareas(puerto);
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el puerto " + puerto + ": " + e.getMessage());
+            cerrarBitacora();
+            return;
+        }
+        CountDownLatch guardado = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            srv.close();
+            try {
+                guardado.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "servidor-apagado"));
+        System.out.println("Servidor escuchando en el puerto " + srv.puerto() + " (Ctrl+C para terminar)");
+        // si la bitacora fallo no se guarda snapshot: tendria cambios a los que se les contesto ERR
+        if (srv.correr()) guardarEstado();
+        cerrarBitacora();
+        guardado.countDown();
+    }
+
     // ====== Menús ======
     static void showMenu() {
         System.out.println("\n--- Sistema Avanzado de Tareas ---");
@@ -262,7 +4315,14 @@ public class SistemaTareasAvanzado {
         System.out.println("7) Marcar tarea como completada");
         System.out.println("8) Eliminar tarea");
         System.out.println("9) Listar todas las tareas (base de datos)");
-        System.out.println("10) Guardar manualmente (persistencia)");
+        System.out.println("10) Guardar snapshot ahora (persistencia)");
+        System.out.println("11) Siguiente tarea lista (sin dependencias pendientes)");
+        System.out.println("12) Consultar tareas con filtros");
+        System.out.println("13) Reprogramar tarea (urgencia / fecha)");
+        System.out.println("14) Importar / exportar (CSV o JSONL)");
+        System.out.println("15) Metricas");
+        System.out.println("16) Tareas vencidas y por vencer");
+        System.out.println("17) Reportes por departamento");
         System.out.println("0) Salir");
         System.out.print("Opcion: ");
     }
@@ -278,9 +4338,8 @@ public class SistemaTareasAvanzado {
         Date fecha = new Date(System.currentTimeMillis() + urg * 86400000L);
 
         Tarea t = new Tarea(tit, depto, urg, fecha);
-        // lo metemos en cola prioridad y en la base de datos hash
-        cola.add(t);
-        db.addTarea(t);
+        // lo metemos en cola prioridad, base de datos hash y planificador
+        registrarTarea(t);
 
         System.out.println("Tarea agregada: " + t);
 
@@ -294,7 +4353,8 @@ public class SistemaTareasAvanzado {
             for (String p : parts) {
                 try {
                     int depId = Integer.parseInt(p.trim());
-                    if (db.getTarea(depId) != null) grafo.addDep(t.id, depId);
+                    if (db.getTarea(depId) != null && !registrarDep(t.id, depId))
+                        System.out.println("Dependencia con " + depId + " rechazada: formaria un ciclo");
                 } catch (Exception e) { /* skip invalid */ }
             }
             System.out.println("Dependencias registradas si los ID existian.");
@@ -311,40 +4371,81 @@ public class SistemaTareasAvanzado {
     }
 
     static void ordenarYBuscar() {
-        GestorOrdenamiento gestor = new GestorOrdenamiento(db.tareas.values());
-        System.out.println("1) Ordenar por urgencia\n2) Ordenar por fecha\n3) Buscar por ID");
+        System.out.println("1) Ordenar por urgencia\n2) Ordenar por fecha\n3) Buscar por ID\n4) Buscar por texto (titulo / depto)");
         String o = sc.nextLine().trim();
         switch (o) {
-            case "1": gestor.ordenarPorUrgencia(); gestor.mostrar(); break;
-            case "2": gestor.ordenarPorFecha(); gestor.mostrar(); break;
+            case "1": mostrarPaginado(GestorOrdenamiento.Orden.URGENCIA); break;
+            case "2": mostrarPaginado(GestorOrdenamiento.Orden.FECHA); break;
             case "3":
                 int id = readInt("ID a buscar: ", 1, Integer.MAX_VALUE);
                 Tarea t = gestor.buscarPorID(id);
                 System.out.println(t == null ? "No encontrada" : t);
                 break;
+            case "4": buscarTexto(); break;
             default: System.out.println("Opcion invalida");
         }
     }
 
+    // los 20 mejores; si no sale nada exacto se vuelve a intentar tolerando errores de dedo
+    static void buscarTexto() {
+        System.out.print("Buscar: ");
+        String q = sc.nextLine();
+        long inicio = System.nanoTime();
+        List<IndiceTexto.Resultado> res = indiceTexto.buscar(q, 20, false);
+        if (res.isEmpty()) res = indiceTexto.buscar(q, 20, true);
+        M_BUSQUEDA.desde(inicio);
+        if (res.isEmpty()) System.out.println("Sin resultados");
+        for (IndiceTexto.Resultado r : res)
+            System.out.println(String.format("%6.2f  ", r.puntaje) + db.getTarea(r.id));
+    }
+
+    // de 20 en 20 para no escupir (ni copiar) todas las tareas de golpe
+    static void mostrarPaginado(GestorOrdenamiento.Orden orden) {
+        final int porPagina = 20;
+        for (int offset = 0; ; offset += porPagina) {
+            gestor.mostrar(orden, offset, porPagina);
+            if (offset + porPagina >= gestor.size()) return;
+            System.out.print("Enter = siguiente pagina, cualquier otra cosa = salir: ");
+            if (!sc.nextLine().trim().isEmpty()) return;
+        }
+    }
+
     static void empleadosMenu() {
-        System.out.println("1) Mostrar empleados\n2) Buscar empleado\n3) Agregar empleado");
+        System.out.println("1) Mostrar empleados\n2) Buscar empleado\n3) Agregar empleado\n4) Buscar por prefijo\n5) Rango de nombres\n6) Eliminar empleado");
         String o = sc.nextLine().trim();
         if (o.equals("1")) arbol.mostrarInOrder();
         else if (o.equals("2")) {
             System.out.print("Nombre: ");
             String n = sc.nextLine();
-            System.out.println(arbol.buscar(n) ? "Encontrado" : "No existe");
+            String depto = arbol.buscar(n);
+            System.out.println(depto != null ? "Encontrado (Depto: " + depto + ")" : "No existe");
         } else if (o.equals("3")) {
             System.out.print("Nombre empleado: ");
             String n = sc.nextLine();
             System.out.print("Departamento: ");
             String d = sc.nextLine();
-            arbol.insertar(n, d);
-            db.addEmpleado(n, d);
-            System.out.println("Empleado agregado: " + n + " (" + d + ")");
+            System.out.println("Empleado agregado: " + registrarEmpleado(n, d) + " (" + d + ")");
+        } else if (o.equals("4")) {
+            System.out.print("Prefijo: ");
+            mostrarEmpleados(arbol.buscarPorPrefijo(sc.nextLine().trim()));
+        } else if (o.equals("5")) {
+            System.out.print("Desde (vacio = inicio): ");
+            String desde = sc.nextLine().trim();
+            System.out.print("Hasta (vacio = final): ");
+            String hasta = sc.nextLine().trim();
+            mostrarEmpleados(arbol.rango(desde.isEmpty() ? null : desde, hasta.isEmpty() ? null : hasta));
+        } else if (o.equals("6")) {
+            System.out.print("Nombre: ");
+            String quitado = quitarEmpleado(sc.nextLine());
+            System.out.println(quitado == null ? "No existe" : "Empleado eliminado: " + quitado);
         } else System.out.println("Opcion invalida");
     }
 
+    static void mostrarEmpleados(List<NodoEmpleado> lista) {
+        if (lista.isEmpty()) System.out.println("Sin resultados");
+        for (NodoEmpleado n : lista) System.out.println("Empleado: " + n.nombre + " (Depto: " + n.departamento + ")");
+    }
+
     static void hashMenu() {
         System.out.println("--- HashMap: Todas las tareas ---");
         db.mostrarTareas();
@@ -359,17 +4460,43 @@ public class SistemaTareasAvanzado {
     }
 
     static void dependenciasMenu() {
-        System.out.println("1) Mostrar dependencias\n2) Agregar dependencia");
+        System.out.println("1) Mostrar dependencias\n2) Agregar dependencia\n3) Orden topologico\n4) Ruta critica"
+                + "\n5) Que se atrasa si una tarea no se hace (impacto)\n6) Todo lo que necesita una tarea");
         String o = sc.nextLine().trim();
         if (o.equals("1")) {
-            grafo.mostrar(db.tareas);
+            grafo.mostrar(db::getTarea);
         } else if (o.equals("2")) {
             int origen = readInt("ID tarea origen: ", 1, Integer.MAX_VALUE);
             int destino = readInt("ID tarea de la que depende: ", 1, Integer.MAX_VALUE);
             if (db.getTarea(origen) != null && db.getTarea(destino) != null) {
-                grafo.addDep(origen, destino);
-                System.out.println("Dependencia registrada.");
+                if (registrarDep(origen, destino)) System.out.println("Dependencia registrada.");
+                else System.out.println("Rechazada: esa dependencia formaria un ciclo.");
             } else System.out.println("Alguno de los ID no existe.");
+        } else if (o.equals("3")) {
+            List<Integer> orden = grafo.ordenTopologico();
+            if (orden.isEmpty()) System.out.println("No hay dependencias registradas.");
+            for (int id : orden) {
+                Tarea t = db.getTarea(id);
+                System.out.println(t != null ? t : "ID " + id);
+            }
+        } else if (o.equals("4")) {
+            GrafoDependencias.RutaCritica r = grafo.rutaCritica(db::getTarea);
+            if (r.tareas.isEmpty()) System.out.println("No hay dependencias registradas.");
+            else {
+                System.out.println("Ruta critica (" + r.tareas.size() + " tareas, " + (r.largoMs / 3600000L) + " h entre fechas):");
+                for (int id : r.tareas) {
+                    Tarea t = db.getTarea(id);
+                    System.out.println("  " + (t != null ? t : "ID " + id));
+                }
+            }
+        } else if (o.equals("5") || o.equals("6")) {
+            int id = readInt("ID de la tarea: ", 1, Integer.MAX_VALUE);
+            BitSet ids = o.equals("5") ? grafo.bloqueadasPor(id) : grafo.requisitosDe(id);
+            System.out.println((o.equals("5") ? "Quedan bloqueadas: " : "Necesita antes: ") + ids.cardinality());
+            for (int x = ids.nextSetBit(0); x >= 0; x = ids.nextSetBit(x + 1)) {
+                Tarea t = db.getTarea(x);
+                System.out.println("  " + (t != null ? t : "ID " + x));
+            }
         } else System.out.println("Opcion invalida");
     }
 
@@ -378,86 +4505,747 @@ public class SistemaTareasAvanzado {
     // marcar tarea completada por ID (busca en la BaseDatos)
     static void marcarTareaCompletada() {
         int id = readInt("ID de la tarea a marcar completada: ", 1, Integer.MAX_VALUE);
-        Tarea t = db.getTarea(id);
+        Tarea t = completarTarea(id);
         if (t == null) System.out.println("No existe tarea con ese ID.");
-        else {
-            t.marcarCompletada();
-            System.out.println("Tarea marcada como completada: " + t);
-        }
+        else System.out.println("Tarea marcada como completada: " + t);
+    }
+
+    // la siguiente tarea que se puede empezar ya (todas sus dependencias estan hechas)
+    static void siguienteTareaLista() {
+        Tarea t = planificador.siguiente();
+        System.out.println(t == null ? "No hay tareas listas" : "Siguiente: " + t);
+        System.out.println("Listas: " + planificador.listas() + ", bloqueadas: " + planificador.bloqueadas());
     }
 
     // eliminar tarea: la quitamos del hashmap y la cola (si aparece), y del grafo (limpiamos deps)
     static void eliminarTarea() {
         int id = readInt("ID de la tarea a eliminar: ", 1, Integer.MAX_VALUE);
-        Tarea t = db.getTarea(id);
+        Tarea t = quitarTarea(id);
         if (t == null) { System.out.println("No existe tarea con ese ID."); return; }
-        // quitar del hashmap
-        db.tareas.remove(id);
-        // quitar de la cola: reconstruimos pq sin esa tarea
-        List<Tarea> tmp = cola.toList();
-        tmp.removeIf(x -> x.id == id);
-        cola = new ColaPrioridad();
-        for (Tarea x : tmp) cola.add(x);
-        // quitar dependencias que apuntan o salen de la tarea
-        // removemos la entrada y tambien borramos referencias en listas
-        grafo.adj.remove(id);
-        for (List<Integer> deps : grafo.adj.values()) deps.removeIf(d -> d == id);
         System.out.println("Tarea eliminada de todas las estructuras: " + t.titulo);
     }
 
+    // cambiar urgencia y fecha de entrega de una tarea ya creada
+    static void reprogramarTareaMenu() {
+        int id = readInt("ID de la tarea: ", 1, Integer.MAX_VALUE);
+        if (db.getTarea(id) == null) { System.out.println("No existe tarea con ese ID."); return; }
+        int urg = readInt("Nueva urgencia (1-5): ", 1, 5);
+        int dias = readInt("Dias para la entrega: ", 0, 3650);
+        Tarea t = reprogramarTarea(id, urg, new Date(System.currentTimeMillis() + dias * 86400000L));
+        System.out.println("Tarea reprogramada: " + t);
+    }
+
+    // consulta con filtros usando los indices de la base (no recorre todo)
+    static void consultarTareas() {
+        Consulta q = db.consulta();
+        System.out.print("Depto (vacio = todos): ");
+        String depto = sc.nextLine().trim();
+        if (!depto.isEmpty()) q.depto(depto);
+        q.urgenciaMin(readInt("Urgencia minima (1-5): ", 1, 5));
+        System.out.print("Solo pendientes? (s/n): ");
+        if (sc.nextLine().trim().equalsIgnoreCase("s")) q.pendientes();
+        int horas = readInt("Que venzan en las proximas N horas (0 = sin limite): ", 0, Integer.MAX_VALUE);
+        if (horas > 0) q.venceAntesDe(new Date(System.currentTimeMillis() + horas * 3600000L));
+        List<Tarea> res = q.ejecutar();
+        if (res.isEmpty()) System.out.println("Sin resultados");
+        res.forEach(System.out::println);
+    }
+
+    // vencidas y por vencer ahora mismo, con el indice de fechas (sin ordenar todo)
+    static void vencimientosMenu() {
+        Date ahora = new Date();
+        List<Tarea> vencidas = db.consulta().pendientes().venceAntesDe(new Date(ahora.getTime() - 1)).ejecutar();
+        System.out.println("--- Vencidas (" + vencidas.size() + ") ---");
+        vencidas.forEach(System.out::println);
+        List<Tarea> pronto = db.consulta().pendientes()
+                .venceEntre(ahora, new Date(ahora.getTime() + VENC_AVISO_MS)).ejecutar();
+        System.out.println("--- Vencen en las proximas " + (VENC_AVISO_MS / 3600000L) + " h (" + pronto.size() + ") ---");
+        pronto.forEach(System.out::println);
+    }
+
+    // cuentas por depto y urgencia sobre todas las tareas (Reportes, un hilo por particion) y,
+    // si se pide, las pendientes exportadas de la mas urgente a la menos
+    static void reportesMenu() {
+        long inicio = System.nanoTime();
+        Reportes.Resumen r = Reportes.resumir(db, System.currentTimeMillis());
+        long ms = (System.nanoTime() - inicio) / 1000000L;
+        M_REPORTE.desde(inicio);
+        System.out.println("--- Reporte (" + r.total.total() + " tareas, " + ms + " ms, "
+                + db.particiones.numero() + " particiones) ---");
+        System.out.println(String.format("%-14s %9s %9s %9s  %-39s %8s", "Depto", "Total", "Hechas",
+                "Pend", "pendientes urg 5 / 4 / 3 / 2 / 1", "% venc"));
+        List<Reportes.Fila> filas = new ArrayList<>(r.porDepto.values());
+        filas.add(r.total);
+        for (Reportes.Fila f : filas)
+            System.out.println(String.format("%-14s %9d %9d %9d  %7d %7d %7d %7d %7d %7.1f%%", f.depto, f.total(),
+                    f.completadas(), f.pendientes(), f.pendientes[5], f.pendientes[4], f.pendientes[3],
+                    f.pendientes[2], f.pendientes[1], 100 * f.proporcionVencidas()));
+        System.out.print("Exportar pendientes por urgencia a archivo .csv/.jsonl (vacio = no): ");
+        String archivo = sc.nextLine().trim();
+        if (archivo.isEmpty()) return;
+        exportar(CargaMasiva.Tipo.TAREAS, new File(archivo),
+                Reportes.ordenadas(db, t -> !t.completada, GestorOrdenamiento.POR_URGENCIA));
+    }
+
+    // corre la rueda hasta ahora y avisa lo que vencio o esta por vencer desde la ultima vez
+    static void revisarVencimientos() {
+        List<Integer> vencidas = new ArrayList<>(), pronto = new ArrayList<>();
+        vencimientos.avanzar(System.currentTimeMillis(), (e, id) -> {
+            if (e == RuedaVencimientos.Evento.VENCIDA) {
+                M_VENCIDAS.inc();
+                vencidas.add(id);
+            } else {
+                M_POR_VENCER.inc();
+                pronto.add(id);
+            }
+        });
+        avisar("Vencio", vencidas);
+        avisar("Por vencer", pronto);
+    }
+
+    // las primeras 5 con titulo, de las demas solo cuantas (al arrancar pueden ser miles)
+    static void avisar(String que, List<Integer> ids) {
+        for (int i = 0; i < ids.size() && i < 5; i++) {
+            Tarea t = db.getTarea(ids.get(i));
+            if (t != null) System.out.println("(!) " + que + ": " + t);
+        }
+        if (ids.size() > 5) System.out.println("(!) ... y " + (ids.size() - 5) + " mas (" + que.toLowerCase() + ")");
+    }
+
     // listar todas las tareas que hay en la base de datos (hashmap)
     static void listarTodasLasTareas() {
         System.out.println("--- Todas las tareas (BaseDatos) ---");
         db.mostrarTareas();
     }
 
-    // ====== PERSISTENCIA: guardar y cargar estado (db + grafo) ======
+    // ====== PERSISTENCIA: snapshot + bitacora (write-ahead log) ======
 
-    // guarda estado a disco (db y grafo)
+    // guarda estado a disco: snapshot atomico y se vacia la bitacora
     static void guardarEstado() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ARCHIVO_DB))) {
-            oos.writeObject(db);
-            System.out.println("Base de datos guardada: " + ARCHIVO_DB);
+        try {
+            long inicio = System.nanoTime();
+            if (wal != null) wal.checkpoint(SistemaTareasAvanzado::escribirSnapshot);
+            else escribirSnapshot(0);
+            M_GUARDAR.desde(inicio);
+            System.out.println("Estado guardado: " + ARCHIVO_SNAPSHOT);
+        } catch (Exception e) {
+            System.out.println("Error guardando estado: " + e.getMessage());
+        }
+    }
+
+    // se escribe a un temporal y luego se renombra: o queda el snapshot viejo o el nuevo, nunca uno a medias
+    static void escribirSnapshot(long lsn) throws IOException {
+        Path destino = Paths.get(ARCHIVO_SNAPSHOT);
+        Path tmp = Paths.get(ARCHIVO_SNAPSHOT + ".tmp");
+        SnapshotBinario.escribir(tmp.toFile(), lsn, db, grafo);
+        Files.move(tmp, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Carga estado de disco (si existe): snapshot y luego lo que quedo en la bitacora.
+    // false (y avisa) si algo de eso no se pudo leer: el que llama no debe seguir, porque el
+    // primer guardarEstado escribiria un snapshot sin esos datos y vaciaria la bitacora.
+    static boolean cargarEstado() {
+        long inicio = System.nanoTime();
+        long lsn = 0;
+        File snap = new File(ARCHIVO_SNAPSHOT);
+        if (snap.exists()) {
+            try {
+                if (SnapshotBinario.esBinario(snap)) {
+                    SnapshotBinario.Cargado c = SnapshotBinario.leer(snap);
+                    lsn = c.lsn;
+                    db = c.db;
+                    grafo = c.grafo;
+                } else {
+                    // snapshot de antes del formato binario (serializacion de Java)
+                    try (ObjectInputStream ois = abrirSerializado(snap)) {
+                        lsn = ois.readLong();
+                        db = (BaseDatos) ois.readObject();
+                        grafo = (GrafoDependencias) ois.readObject();
+                    }
+                }
+                System.out.println("Snapshot cargado con " + db.size() + " tareas.");
+            } catch (Exception e) {
+                return noSeCargo(snap, "Error cargando snapshot: " + e.getMessage());
+            }
+        } else if (!cargarEstadoLegado()) return false;
+        reconstruirDerivados();
+        try {
+            long antes = lsn;
+            lsn = BitacoraWAL.reproducir(new File(ARCHIVO_WAL), lsn, SistemaTareasAvanzado::aplicarRegistro);
+            if (lsn > antes) System.out.println("Bitacora reproducida: " + (lsn - antes) + " cambios.");
         } catch (Exception e) {
-            System.out.println("Error guardando DB: " + e.getMessage());
+            return noSeCargo(new File(ARCHIVO_WAL), "Error reproduciendo bitacora: " + e.getMessage());
+        }
+        try {
+            wal = new BitacoraWAL(new File(ARCHIVO_WAL), lsn, WAL_SYNC_REGISTROS, WAL_SYNC_MS, SNAPSHOT_CADA);
+            if (wal.versionVieja()) wal.checkpoint(SistemaTareasAvanzado::escribirSnapshot); // ya se reprodujo arriba
+        } catch (IOException e) {
+            System.out.println("Error abriendo bitacora (los cambios no se anotaran): " + e.getMessage());
         }
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ARCHIVO_GRAFO))) {
-            oos.writeObject(grafo);
-            System.out.println("Grafo guardado: " + ARCHIVO_GRAFO);
+        if (urgenciasRecortadas > 0)
+            System.out.println("Aviso: " + urgenciasRecortadas + " tareas traian urgencia fuera de 1-5, se ajustaron a la orilla.");
+        M_CARGAR.desde(inicio);
+        return true;
+    }
+
+    static boolean noSeCargo(File archivo, String error) {
+        System.out.println(error);
+        System.out.println("No se toco nada. Revisa o restaura " + archivo.getAbsolutePath()
+                + " (o muevelo a otro lado para arrancar sin el) y vuelve a correr.");
+        return false;
+    }
+
+    // los .ser viejos solo pueden traer nuestras clases y colecciones basicas, nada mas
+    static ObjectInputStream abrirSerializado(File f) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f))) {
+            // los .ser de antes del paquete 'tareas' traen las clases sin paquete
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (desc.getName().startsWith(SistemaTareasAvanzado.class.getSimpleName() + "$"))
+                    return Class.forName(SistemaTareasAvanzado.class.getPackageName() + "." + desc.getName(),
+                            false, SistemaTareasAvanzado.class.getClassLoader());
+                return super.resolveClass(desc);
+            }
+        };
+        ois.setObjectInputFilter(ObjectInputFilter.Config.createFilter(
+                SistemaTareasAvanzado.class.getName() + "$*;java.util.HashMap;java.util.ArrayList;"
+                + "java.util.Map$Entry;java.lang.Object;java.util.Date;java.lang.Integer;java.lang.Number;maxdepth=20;!*"));
+        return ois;
+    }
+
+    // convierte los tareas_db.ser / tareas_grafo.ser viejos al snapshot binario
+    static void convertirLegado(String dbSer, String grafoSer) {
+        try {
+            try (ObjectInputStream ois = abrirSerializado(new File(dbSer))) {
+                db = (BaseDatos) ois.readObject();
+            }
+            File fg = new File(grafoSer);
+            if (fg.exists()) {
+                try (ObjectInputStream ois = abrirSerializado(fg)) {
+                    grafo = (GrafoDependencias) ois.readObject();
+                }
+            }
+            db.forEach(t -> Tarea.reservarId(t.id));
+            escribirSnapshot(0);
+            new File(ARCHIVO_WAL).delete(); // la bitacora vieja no corresponde al snapshot nuevo
+            System.out.println("Convertido: " + db.size() + " tareas, " + grafo.numAristas()
+                    + " dependencias -> " + ARCHIVO_SNAPSHOT);
         } catch (Exception e) {
-            System.out.println("Error guardando grafo: " + e.getMessage());
+            System.out.println("Error convirtiendo: " + e.getMessage());
         }
     }
 
-    // carga estado de disco (si existe)
-    static void cargarEstado() {
+    // Un solo proceso a la vez con el snapshot y la bitacora de un directorio (candado en tareas.lock,
+    // lo suelta el sistema operativo cuando el proceso termina). Si no, dos procesos se pisarian
+    // tareas.snap y tareas.wal. false (y avisa) si ya lo tiene otro.
+    static boolean tomarDatos() {
+        if (candado != null) return true;
+        try {
+            FileChannel ch = FileChannel.open(Paths.get(ARCHIVO_CANDADO), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock l = ch.tryLock();
+            if (l == null) {
+                ch.close();
+                System.out.println("Los datos de " + Paths.get(DIR_DATOS).toAbsolutePath() + " los tiene abiertos otro proceso"
+                        + " (un --servidor?). Para usarlo entra con --cliente.");
+                return false;
+            }
+            candado = l;
+            return true;
+        } catch (IOException e) {
+            System.out.println("No se pudo bloquear " + ARCHIVO_CANDADO + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    static void cerrarBitacora() {
+        if (wal == null) return;
+        try {
+            wal.close();
+        } catch (IOException e) {
+            System.out.println("Error cerrando bitacora: " + e.getMessage());
+        }
+        wal = null;
+    }
+
+    // formato viejo: dos archivos .ser separados (solo si todavia no hay snapshot)
+    static boolean cargarEstadoLegado() {
         File fdb = new File(ARCHIVO_DB);
         if (fdb.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fdb))) {
+            try (ObjectInputStream ois = abrirSerializado(fdb)) {
                 BaseDatos loaded = (BaseDatos) ois.readObject();
                 if (loaded != null) {
                     db = loaded;
-                    // reconstruir cola desde db (para mantener consistencia)
-                    cola = new ColaPrioridad();
-                    for (Tarea t : db.tareas.values()) cola.add(t);
-                    System.out.println("Base de datos cargada con " + db.tareas.size() + " tareas.");
+                    System.out.println("Base de datos cargada con " + db.size() + " tareas.");
                 }
             } catch (Exception e) {
-                System.out.println("Error cargando DB: " + e.getMessage());
+                return noSeCargo(fdb, "Error cargando DB: " + e.getMessage());
             }
         }
         File fg = new File(ARCHIVO_GRAFO);
         if (fg.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fg))) {
+            try (ObjectInputStream ois = abrirSerializado(fg)) {
                 GrafoDependencias loaded = (GrafoDependencias) ois.readObject();
                 if (loaded != null) {
                     grafo = loaded;
                     System.out.println("Grafo de dependencias cargado.");
                 }
             } catch (Exception e) {
-                System.out.println("Error cargando grafo: " + e.getMessage());
+                return noSeCargo(fg, "Error cargando grafo: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    // lo que no se guarda se rehace desde db + grafo
+    static void reconstruirDerivados() {
+        cola = new ColaPrioridad();
+        List<Tarea> pendientes = new ArrayList<>();
+        List<Tarea> todas = db.todas();
+        for (Tarea t : todas) {
+            if (!t.completada) pendientes.add(t);
+            Tarea.reservarId(t.id); // que las nuevas no choquen con las cargadas
+        }
+        cola.agregarTodas(pendientes);
+        // el arbol no se guarda: se rehace con los empleados de la base
+        arbol = new ArbolEmpleados();
+        List<NodoEmpleado> emps = new ArrayList<>(db.empleados.size());
+        db.empleados.forEach((n, d) -> emps.add(new NodoEmpleado(n, d)));
+        arbol.insertarTodos(emps);
+        // datos de antes traian "Ana" y "ana" como dos empleados: el arbol ya los junto, la base igual
+        if (arbol.size != db.empleados.size()) {
+            db.empleados.clear();
+            for (NodoEmpleado e : arbol.todos()) db.empleados.put(e.nombre, e.departamento);
+        }
+        planificador.reconstruir(db, grafo);
+        gestor.reconstruir(todas);
+        indiceTexto.reconstruir(todas);
+        vencimientos = new RuedaVencimientos(System.currentTimeMillis(), VENC_TICK_MS, VENC_AVISO_MS);
+        for (Tarea t : pendientes) vencimientos.agregar(t.id, t.fechaEntrega.getTime());
+    }
+
+    // cuantas urgencias fuera de 1-5 se recortaron al cargar (se avisa al final de cargarEstado)
+    static int urgenciasRecortadas;
+
+    // Lo que viene de disco (snapshot, bitacora, .ser viejos) con urgencia fuera de 1-5 se recorta
+    // a la orilla en vez de tronar toda la carga por una tarea; lo que captura el usuario o llega
+    // por import / red se rechaza antes (ver BaseDatos.revisarUrgencia).
+    static int urgenciaDeDisco(int u) {
+        if (u >= 1 && u <= 5) return u;
+        urgenciasRecortadas++;
+        return u < 1 ? 1 : 5;
+    }
+
+    // aplica un cambio leido de la bitacora (cada caso tolera venir repetido)
+    static void aplicarRegistro(int version, byte tipo, DataInputStream in) throws IOException {
+        switch (tipo) {
+            case BitacoraWAL.ALTA_TAREA: {
+                int id = in.readInt();
+                String titulo = in.readUTF();
+                String depto = in.readUTF();
+                int urg = urgenciaDeDisco(in.readByte());
+                Date fecha = new Date(in.readLong());
+                boolean hecha = in.readBoolean();
+                long creada = version >= 2 ? in.readLong() : 0; // la version 1 no la trae
+                if (db.getTarea(id) == null) {
+                    Tarea t = new Tarea(id, titulo, depto, urg, fecha, hecha);
+                    t.creadaEn = creada;
+                    registrarTarea(t);
+                }
+                break;
+            }
+            case BitacoraWAL.COMPLETAR: completarTarea(in.readInt()); break;
+            case BitacoraWAL.ELIMINAR: quitarTarea(in.readInt()); break;
+            case BitacoraWAL.DEPENDENCIA: registrarDep(in.readInt(), in.readInt()); break;
+            case BitacoraWAL.EMPLEADO: registrarEmpleado(in.readUTF(), in.readUTF()); break;
+            case BitacoraWAL.BAJA_EMPLEADO: quitarEmpleado(in.readUTF()); break;
+            case BitacoraWAL.REPROGRAMAR: {
+                int id = in.readInt();
+                int urg = urgenciaDeDisco(in.readByte());
+                reprogramarTarea(id, urg, new Date(in.readLong()));
+                break;
+            }
+            default: throw new IOException("registro desconocido en la bitacora: " + tipo);
+        }
+    }
+
+    // lo que se lee al consultar (menu 15 / JMX), no cuesta nada mientras nadie pregunte
+    static void registrarMedidores() {
+        Metricas.medidor("cola.tamano", () -> cola.size());
+        Metricas.medidor("planificador.listas", () -> planificador.listas());
+        Metricas.medidor("planificador.bloqueadas", () -> planificador.bloqueadas());
+        Metricas.medidor("grafo.aristas", () -> grafo.numAristas());
+        Metricas.medidor("db.tareas", () -> db.size());
+        Metricas.medidor("db.empleados", () -> db.empleados.size());
+        Metricas.medidor("vencimientos.pendientes", () -> vencimientos.size());
+        Metricas.medidor("texto.terminos", () -> indiceTexto.numTerminos());
+    }
+
+    interface CambioBitacora { void anotar(BitacoraWAL w) throws IOException; }
+
+    // cuantos cambios no se pudieron anotar; el servidor lo revisa para no confirmar lo que no quedo en disco
+    static long fallasBitacora;
+
+    // anota el cambio (si hay bitacora abierta) y cada tantos cambios hace snapshot
+    static void anotar(CambioBitacora cambio) {
+        if (wal == null) return;
+        try {
+            cambio.anotar(wal);
+        } catch (IOException e) {
+            fallasBitacora++;
+            System.out.println("Error escribiendo bitacora: " + e.getMessage());
+            return;
+        }
+        if (wal.tocaSnapshot()) guardarEstado();
+    }
+
+    // ====== Altas centralizadas ======
+    // Una tarea o dependencia nueva tiene que llegar a todas las estructuras, no solo a una.
+    static void registrarTarea(Tarea t) {
+        BaseDatos.revisarUrgencia(t.urgencia); // antes de meterla a cualquier estructura
+        if (!t.completada) cola.add(t);
+        db.addTarea(t);
+        planificador.agregar(t);
+        gestor.agregar(t);
+        indiceTexto.agregar(t.id, t.titulo, t.departamento);
+        if (!t.completada) vencimientos.agregar(t.id, t.fechaEntrega.getTime());
+        M_ALTAS.inc();
+        anotar(w -> w.altaTarea(t));
+    }
+
+    // false si la dependencia cerraria un ciclo (el grafo la rechaza)
+    static boolean registrarDep(int tareaA, int tareaB) {
+        if (!grafo.addDep(tareaA, tareaB)) {
+            M_DEPS_RECHAZADAS.inc();
+            return false;
+        }
+        M_DEPS.inc();
+        M_FANOUT.registrar(grafo.numDependientes(tareaB));
+        planificador.agregarDep(tareaA, tareaB);
+        anotar(w -> w.dependencia(tareaA, tareaB));
+        return true;
+    }
+
+    static Tarea completarTarea(int id) {
+        Tarea t = db.marcarCompletada(id);
+        if (t == null) return null;
+        cola.remove(id);                       // ya no esta pendiente, fuera de la cola
+        planificador.completar(id, db::getTarea); // y libera a quien la esperaba
+        vencimientos.cancelar(id);
+        M_COMPLETADAS.inc();
+        // al reproducir la bitacora (wal == null) el "ahora" no es cuando se completo, no cuenta
+        if (wal != null && t.creadaEn > 0)
+            M_HASTA_COMPLETAR.de(t.departamento).registrar(System.currentTimeMillis() - t.creadaEn);
+        anotar(w -> w.completar(id));
+        return t;
+    }
+
+    static Tarea quitarTarea(int id) {
+        Tarea t = db.removeTarea(id);
+        if (t == null) return null;
+        gestor.quitar(t);
+        cola.remove(id);                       // heap indexado, O(log n)
+        planificador.completar(id, db::getTarea); // sus dependientes ya no la esperan
+        grafo.eliminarNodo(id);                // solo las aristas que la tocan
+        vencimientos.cancelar(id);
+        indiceTexto.quitar(id);
+        M_ELIMINADAS.inc();
+        anotar(w -> w.eliminar(id));
+        return t;
+    }
+
+    static Tarea reprogramarTarea(int id, int urgencia, Date fecha) {
+        BaseDatos.revisarUrgencia(urgencia); // antes de desindexar, si no se queda a medias
+        Tarea t = db.getTarea(id);
+        if (t == null) return null;
+        db.desindexar(t);
+        gestor.quitar(t);
+        t.urgencia = urgencia;
+        t.fechaEntrega = fecha;
+        // los heaps solo reacomodan el camino de esa tarea
+        cola.reubicar(id);
+        planificador.listas.reubicar(id);
+        db.indexar(t);
+        gestor.agregar(t);
+        if (!t.completada) vencimientos.agregar(id, fecha.getTime()); // reemplaza la anterior
+        anotar(w -> w.reprogramar(id, urgencia, fecha.getTime()));
+        return t;
+    }
+
+    // "ana" sobre un "Ana" que ya existe le cambia el depto a "Ana" en el arbol, en la base y en
+    // la bitacora; regresa el nombre como quedo guardado
+    static String registrarEmpleado(String nombre, String depto) {
+        String guardado = arbol.insertar(nombre, depto);
+        db.addEmpleado(guardado, depto);
+        anotar(w -> w.empleado(guardado, depto));
+        return guardado;
+    }
+
+    // regresa el nombre como estaba guardado, o null si no existia
+    static String quitarEmpleado(String nombre) {
+        String quitado = arbol.eliminar(nombre);
+        if (quitado == null) return null;
+        db.empleados.remove(quitado);
+        anotar(w -> w.bajaEmpleado(quitado));
+        return quitado;
+    }
+
+    // ====== Importar / exportar (CSV o JSON lines) ======
+    // Si lo importado pesa (ver CargaMasiva.esMasiva) la cola, el planificador, el arbol y las
+    // vistas se rehacen de un jalon (heapify, arbol balanceado desde la lista ordenada) y se
+    // guarda snapshot en vez de anotar registro por registro en la bitacora. Si son poquitas se
+    // dan de alta normal, como en el menu.
+    static void importar(CargaMasiva.Tipo tipo, File f) {
+        long inicio = System.nanoTime();
+        try {
+            CargaMasiva.Resumen res;
+            switch (tipo) {
+                case TAREAS: res = importarTareas(f); break;
+                case EMPLEADOS: res = importarEmpleados(f); break;
+                default: res = importarDependencias(f); break;
+            }
+            System.out.printf("Importado %s: %s en %.2f s%n", f.getName(), res, (System.nanoTime() - inicio) / 1e9);
+        } catch (IOException e) {
+            System.out.println("Error importando: " + e.getMessage());
+        }
+    }
+
+    // Se aplican lote por lote conforme se leen, igual que las dependencias: mientras van pocas,
+    // una por una con registrarTarea (y su bitacora); en cuanto el archivo resulta masivo, cada
+    // lote que sigue entra directo a db (addTodas) y al final se rehace lo demas de un jalon.
+    // Asi no se junta el archivo entero en una lista antes de tocar la base.
+    static CargaMasiva.Resumen importarTareas(File f) throws IOException {
+        int antes = db.size();
+        BitSet vistos = new BitSet(); // ids que ya vienen en el archivo
+        long[] repetidas = {0}, validas = {0};
+        boolean[] masiva = {false};
+        List<Tarea> directas = new ArrayList<>(); // las del lote que van directo a db
+        // un solo String por depto (10M tareas no necesitan 10M copias de "TI")
+        HashMap<String, String> deptos = new HashMap<>();
+        for (String d : db.porDepto.keySet()) deptos.put(d, d);
+        CargaMasiva.Resumen res;
+        try {
+            res = CargaMasiva.leer(f, CargaMasiva.Tipo.TAREAS, CargaMasiva::tarea, lote -> {
+                directas.clear();
+                for (Tarea t : lote) {
+                    if (t.id == 0) t.id = Tarea.nuevoId();
+                    else if (vistos.get(t.id) || db.getTarea(t.id) != null) {
+                        repetidas[0]++;
+                        continue;
+                    }
+                    vistos.set(t.id);
+                    t.departamento = deptos.computeIfAbsent(t.departamento, d -> d);
+                    if (!masiva[0]) masiva[0] = CargaMasiva.esMasiva(++validas[0], antes);
+                    if (masiva[0]) directas.add(t);
+                    else registrarTarea(t);
+                }
+                db.addTodas(directas);
+            });
+        } finally {
+            // aunque el archivo truene a medias, lo que ya entro a db queda en todo lo demas y guardado
+            if (masiva[0]) {
+                reconstruirDerivados();
+                guardarEstado();
+            }
+        }
+        if (repetidas[0] > 0) {
+            res.cargadas -= repetidas[0];
+            System.out.println(repetidas[0] + " tareas con id ya existente se saltaron");
+        }
+        return res;
+    }
+
+    static CargaMasiva.Resumen importarEmpleados(File f) throws IOException {
+        List<String[]> nuevos = new ArrayList<>();
+        CargaMasiva.Resumen res = CargaMasiva.leer(f, CargaMasiva.Tipo.EMPLEADOS, CargaMasiva::empleado, nuevos::addAll);
+        if (CargaMasiva.esMasiva(nuevos.size(), arbol.size)) {
+            List<NodoEmpleado> nodos = new ArrayList<>(nuevos.size());
+            for (String[] e : nuevos) nodos.add(new NodoEmpleado(e[0], e[1]));
+            arbol.insertarTodos(nodos);
+            // los nombres como quedaron en el arbol: "ana" sobre un "Ana" (ya guardado o de este
+            // mismo archivo) no es otro empleado. Como es masiva, recorrer todo el arbol sale igual
+            for (NodoEmpleado e : arbol.todos()) db.addEmpleado(e.nombre, e.departamento);
+            guardarEstado();
+        } else {
+            for (String[] e : nuevos) registrarEmpleado(e[0], e[1]);
+        }
+        return res;
+    }
+
+    // Se aplican lote por lote conforme se leen: mientras van pocas, una por una con registrarDep
+    // (y su bitacora); en cuanto el archivo resulta masivo, las que siguen se pegan directo a la
+    // lista de adyacencia y al final un solo Kahn revisa todo (GrafoDependencias.cerrarLote).
+    static CargaMasiva.Resumen importarDependencias(File f) throws IOException {
+        int antes = grafo.numAristas();
+        long[] sinTarea = {0}, rechazadas = {0}, validas = {0};
+        ListasAdyacencia enLote = new ListasAdyacencia(); // las pegadas sin revisar, por si hay ciclo
+        boolean[] masiva = {false};
+        CargaMasiva.Resumen res;
+        try {
+            res = CargaMasiva.leer(f, CargaMasiva.Tipo.DEPENDENCIAS, CargaMasiva::dependencia, lote -> {
+                for (int[] a : lote) {
+                    if (db.getTarea(a[0]) == null || db.getTarea(a[1]) == null) {
+                        sinTarea[0]++;
+                        continue;
+                    }
+                    if (!masiva[0]) masiva[0] = CargaMasiva.esMasiva(++validas[0], antes);
+                    if (!masiva[0]) {
+                        if (!registrarDep(a[0], a[1])) rechazadas[0]++;
+                    } else if (a[0] == a[1]) {
+                        rechazadas[0]++;
+                    } else if (grafo.agregarEnLote(a[0], a[1])) {
+                        enLote.agregar(a[0], a[1]);
+                    }
+                }
+            });
+        } finally {
+            // aunque el archivo truene a medias, lo que ya se pego queda revisado y guardado
+            if (masiva[0]) {
+                rechazadas[0] += grafo.cerrarLote(enLote);
+                planificador.reconstruir(db, grafo);
+                guardarEstado();
+            }
+        }
+        if (sinTarea[0] > 0) {
+            res.cargadas -= sinTarea[0];
+            System.out.println(sinTarea[0] + " dependencias con tareas que no existen se saltaron");
+        }
+        if (rechazadas[0] > 0) {
+            res.cargadas -= rechazadas[0];
+            System.out.println(rechazadas[0] + " dependencias rechazadas: formarian un ciclo");
+        }
+        return res;
+    }
+
+    // exporta sin armar listas nuevas: tareas por id (vista del gestor), empleados en inorden
+    static void exportar(CargaMasiva.Tipo tipo, File f) {
+        exportar(tipo, f, gestor.porId);
+    }
+
+    // 'tareas' es lo que se escribe si tipo es TAREAS, en ese orden
+    static void exportar(CargaMasiva.Tipo tipo, File f, List<Tarea> tareas) {
+        boolean json = CargaMasiva.esJson(f);
+        long n = 0;
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8), 1 << 16))) {
+            CargaMasiva.encabezado(out, json, tipo);
+            switch (tipo) {
+                case TAREAS:
+                    for (Tarea t : tareas) {
+                        CargaMasiva.escribir(out, json, tipo, t.id, t.titulo, t.departamento, t.urgencia,
+                                CargaMasiva.fechaIso(t.fechaEntrega), t.completada);
+                        n++;
+                    }
+                    break;
+                case EMPLEADOS: {
+                    long[] c = {0};
+                    arbol.recorrerDesde(null, e -> {
+                        CargaMasiva.escribir(out, json, tipo, e.nombre, e.departamento);
+                        c[0]++;
+                        return true;
+                    });
+                    n = c[0];
+                    break;
+                }
+                default:
+                    grafo.paraCadaArista((a, b) -> CargaMasiva.escribir(out, json, tipo, a, b));
+                    n = grafo.numAristas();
+            }
+            if (out.checkError()) throw new IOException("no se pudo escribir " + f);
+            System.out.println("Exportado: " + n + " registros -> " + f);
+        } catch (IOException e) {
+            System.out.println("Error exportando: " + e.getMessage());
+        }
+    }
+
+    static void importarExportarMenu() {
+        System.out.print("Importar o exportar? (i/e): ");
+        String modo = sc.nextLine().trim();
+        System.out.print("Que cosa? (tareas/empleados/dependencias): ");
+        CargaMasiva.Tipo tipo;
+        try {
+            tipo = CargaMasiva.Tipo.valueOf(sc.nextLine().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Tipo invalido");
+            return;
+        }
+        System.out.print("Archivo (.csv o .jsonl): ");
+        File f = new File(sc.nextLine().trim());
+        if (modo.equalsIgnoreCase("i")) importar(tipo, f);
+        else if (modo.equalsIgnoreCase("e")) exportar(tipo, f);
+        else System.out.println("Opcion invalida");
+    }
+
+    // ====== Demo del ejecutor: n tareas cortas, cada una depende de la anterior de su depto ======
+    static void demoEjecutor(int n) {
+        String[] deptos = {"TI", "Marketing", "Finanzas", "RH"};
+        MotorTareas motor = new MotorTareas();
+        CountDownLatch fin = new CountDownLatch(n);
+        LongAdder trabajo = new LongAdder();
+        try (EjecutorTareas ej = new EjecutorTareas(motor, 64, 5000)) {
+            ej.limite("RH", 2); // RH solo de dos en dos
+            int[] ultima = new int[deptos.length];
+            Random r = new Random(1);
+            long inicio = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                int d = i % deptos.length;
+                Runnable accion = () -> {
+                    trabajo.increment();
+                    fin.countDown();
+                };
+                Tarea t = new Tarea("Trabajo " + i, deptos[d], 1 + r.nextInt(5), new Date());
+                if (i % 10 == 0 && ultima[d] != 0) ej.enviar(t, accion, 0, ultima[d]);
+                else ej.enviar(t, accion, 0);
+                ultima[d] = t.id;
+            }
+            if (!fin.await(2, TimeUnit.MINUTES)) System.out.println("No terminaron todas a tiempo");
+            double seg = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("%d tareas en %.2f s (%.0f tareas/s)%n", trabajo.sum(), seg, trabajo.sum() / seg);
+            System.out.printf("En el motor quedan %d (retiene hasta %d terminadas)%n", motor.size(), EjecutorTareas.RETENER);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ====== Benchmark de memoria de BaseDatos ======
+    // Llena la base con n tareas iguales y mide el heap ocupado (despues de varios gc).
+    // Los deptos se crean como String nuevos, igual que cuando llegan por el Scanner.
+    static void benchMemoria(String[] tamanos) {
+        System.out.println("Heap maximo: " + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+        for (String tam : tamanos) {
+            int n = Integer.parseInt(tam.trim());
+            System.out.println("--- " + n + " tareas ---");
+            medirMemoria("BaseDatos (HashMap + objetos + indices)", n);
+        }
+    }
+
+    static void medirMemoria(String nombre, int n) {
+        String[] deptos = {"TI", "Marketing", "Finanzas", "RH", "Ventas"};
+        long antes = memoriaUsada();
+        BaseDatos almacen = null;
+        try {
+            almacen = new BaseDatos();
+            Random r = new Random(42);
+            long hoy = System.currentTimeMillis();
+            for (int i = 1; i <= n; i++) {
+                almacen.addTarea(new Tarea(i, "Tarea " + i, new String(deptos[i % deptos.length]),
+                        1 + r.nextInt(5), new Date(hoy + r.nextInt(365) * 86400000L), r.nextInt(4) == 0));
             }
+            long usado = memoriaUsada() - antes;
+            System.out.printf("%-42s %8d MB  %6.1f bytes/tarea%n", nombre, usado >> 20, (double) usado / almacen.size());
+        } catch (OutOfMemoryError e) {
+            almacen = null;
+            System.out.printf("%-42s no cupo en el heap (subir -Xmx)%n", nombre);
         }
+        almacen = null;
+    }
+
+    static long memoriaUsada() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+        return rt.totalMemory() - rt.freeMemory();
     }
 
     // ====== Utils ======
@@ -478,17 +5266,12 @@ public class SistemaTareasAvanzado {
         Tarea t2 = new Tarea("Disenar logo", "Marketing", 2, new Date(System.currentTimeMillis() + 10*86400000L));
         Tarea t3 = new Tarea("Auditoria interna", "Finanzas", 4, new Date(System.currentTimeMillis() + 5*86400000L));
 
-        cola.add(t1); cola.add(t2); cola.add(t3);
-        db.addTarea(t1); db.addTarea(t2); db.addTarea(t3);
-
-        arbol.insertar("Luis", "TI");
-        arbol.insertar("Ana", "Marketing");
-        arbol.insertar("Pedro", "Finanzas");
+        registrarTarea(t1); registrarTarea(t2); registrarTarea(t3);
 
-        db.addEmpleado("Luis", "TI");
-        db.addEmpleado("Ana", "Marketing");
-        db.addEmpleado("Pedro", "Finanzas");
+        registrarEmpleado("Luis", "TI");
+        registrarEmpleado("Ana", "Marketing");
+        registrarEmpleado("Pedro", "Finanzas");
 
-        grafo.addDep(t1.id, t3.id); // deploy depende de auditoria
+        registrarDep(t1.id, t3.id); // deploy depende de auditoria
     }
 }
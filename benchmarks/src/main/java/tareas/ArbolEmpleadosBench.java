@@ -0,0 +1,79 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Arbol de empleados (AVL) con nombres que llegan ordenados o revueltos. Un BST sin
+// balancear se vuelve lista con la entrada ordenada; aqui las dos deben costar parecido.
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class ArbolEmpleadosBench {
+    static final int MASCARA = (1 << 16) - 1;
+
+    @Param({"10000", "1000000", "10000000"})
+    int n;
+
+    @Param({"ORDENADA", "ALEATORIA"})
+    String entrada;
+
+    String[] nombres;
+    SistemaTareasAvanzado.ArbolEmpleados arbol;
+    String[] buscados;
+    int i;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        nombres = Datos.nombres(n, entrada.equals("ORDENADA"));
+        arbol = new SistemaTareasAvanzado.ArbolEmpleados();
+        for (String s : nombres) arbol.insertar(s, "TI");
+        buscados = new String[MASCARA + 1];
+        int[] idx = Datos.indices(MASCARA + 1, n);
+        // la mitad existe y la otra mitad no (se cuela entre dos nombres)
+        for (int k = 0; k <= MASCARA; k++) buscados[k] = (k & 1) == 0 ? nombres[idx[k]] : nombres[idx[k]] + "x";
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SistemaTareasAvanzado.ArbolEmpleados insertarUnoPorUno() {
+        SistemaTareasAvanzado.ArbolEmpleados a = new SistemaTareasAvanzado.ArbolEmpleados();
+        for (String s : nombres) a.insertar(s, "TI");
+        return a;
+    }
+
+    // carga masiva: ordenar + armar balanceado en O(n)
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SistemaTareasAvanzado.ArbolEmpleados insertarTodos() {
+        List<SistemaTareasAvanzado.NodoEmpleado> l = new ArrayList<>(n);
+        for (String s : nombres) l.add(new SistemaTareasAvanzado.NodoEmpleado(s, "TI"));
+        SistemaTareasAvanzado.ArbolEmpleados a = new SistemaTareasAvanzado.ArbolEmpleados();
+        a.insertarTodos(l);
+        return a;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String buscar() {
+        return arbol.buscar(buscados[i++ & MASCARA]);
+    }
+
+    // prefijo que cae en medio del arbol, primeros 10 resultados
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void rango(Blackhole bh) {
+        String desde = buscados[i++ & MASCARA];
+        arbol.recorrerDesde(desde, e -> {
+            bh.consume(e);
+            return e.nombre.charAt(e.nombre.length() - 1) != '9';
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Armar la cola completa desde cero: n veces add() contra agregarTodas() (heapify).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class ColaArmadoBench {
+    @Param({"10000", "1000000", "10000000"})
+    int n;
+
+    List<SistemaTareasAvanzado.Tarea> tareas;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        SistemaTareasAvanzado.Tarea[] t = Datos.tareas(n);
+        Datos.revolver(t, new Random(3));
+        tareas = Arrays.asList(t);
+    }
+
+    @Benchmark
+    public SistemaTareasAvanzado.ColaPrioridad unaPorUna() {
+        SistemaTareasAvanzado.ColaPrioridad cola = new SistemaTareasAvanzado.ColaPrioridad();
+        for (SistemaTareasAvanzado.Tarea t : tareas) cola.add(t);
+        return cola;
+    }
+
+    @Benchmark
+    public SistemaTareasAvanzado.ColaPrioridad heapify() {
+        SistemaTareasAvanzado.ColaPrioridad cola = new SistemaTareasAvanzado.ColaPrioridad();
+        cola.agregarTodas(tareas);
+        return cola;
+    }
+}
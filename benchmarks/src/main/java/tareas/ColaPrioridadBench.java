@@ -0,0 +1,69 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Cola de prioridad (heap indexado) con n tareas adentro: cada operacion deja la cola del mismo tamaño.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class ColaPrioridadBench {
+    static final int MASCARA = (1 << 16) - 1;
+
+    @Param({"10000", "1000000", "10000000"})
+    int n;
+
+    SistemaTareasAvanzado.ColaPrioridad cola;
+    SistemaTareasAvanzado.Tarea[] tareas;
+    SistemaTareasAvanzado.Tarea fuera; // la que esta fuera de la cola entre operaciones
+    int[] ids, urgencias;
+    Date[] fechas;
+    int i;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        tareas = Datos.tareas(n + 1);
+        fuera = tareas[n];
+        cola = new SistemaTareasAvanzado.ColaPrioridad();
+        cola.agregarTodas(Arrays.asList(tareas).subList(0, n));
+        ids = Datos.indices(MASCARA + 1, n);
+        urgencias = Datos.indices(MASCARA + 1, 5);
+        fechas = new Date[MASCARA + 1];
+        for (int k = 0; k <= MASCARA; k++) fechas[k] = new Date(Datos.HOY + ids[k] * 60_000L);
+    }
+
+    // entra una con prioridad al azar y sale la mas urgente
+    @Benchmark
+    public SistemaTareasAvanzado.Tarea encolarYSacar() {
+        int k = i++ & MASCARA;
+        fuera.urgencia = 1 + urgencias[k];
+        fuera.fechaEntrega = fechas[k];
+        cola.add(fuera);
+        fuera = cola.poll();
+        return fuera;
+    }
+
+    // quitar una de en medio por id (lo que hace completar/eliminar) y volverla a meter
+    @Benchmark
+    public boolean quitarYReagregar() {
+        SistemaTareasAvanzado.Tarea t = tareas[ids[i++ & MASCARA]];
+        if (t == fuera) return false;
+        boolean ok = cola.remove(t.id);
+        cola.add(t);
+        return ok;
+    }
+
+    @Benchmark
+    public boolean cambiarUrgencia() {
+        int k = i++ & MASCARA;
+        SistemaTareasAvanzado.Tarea t = tareas[ids[k]];
+        if (t == fuera) return false;
+        t.urgencia = 1 + urgencias[k];
+        return cola.reubicar(t.id);
+    }
+}
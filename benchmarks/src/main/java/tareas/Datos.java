@@ -0,0 +1,46 @@
+package tareas;
+
+import java.util.*;
+
+// Datos de prueba para los benchmarks, siempre los mismos (semilla fija) para poder comparar corridas.
+final class Datos {
+    static final String[] DEPTOS = {"TI", "Marketing", "Finanzas", "RH", "Ventas"};
+    static final long HOY = 1_700_000_000_000L;
+
+    private Datos() {}
+
+    // n tareas con ids 1..n (tareas[i] tiene id i + 1); el titulo es el mismo para no inflar el heap a 10M
+    static SistemaTareasAvanzado.Tarea[] tareas(int n) {
+        Random r = new Random(42);
+        SistemaTareasAvanzado.Tarea[] t = new SistemaTareasAvanzado.Tarea[n];
+        for (int i = 0; i < n; i++)
+            t[i] = new SistemaTareasAvanzado.Tarea(i + 1, "Tarea", DEPTOS[i % DEPTOS.length], 1 + r.nextInt(5),
+                    new Date(HOY + (long) r.nextInt(365 * 24) * 3_600_000L), r.nextInt(4) == 0);
+        return t;
+    }
+
+    // nombres distintos; ordenados o revueltos segun lo que se quiera medir
+    static String[] nombres(int n, boolean ordenados) {
+        String[] s = new String[n];
+        for (int i = 0; i < n; i++) s[i] = String.format("Empleado%08d", i);
+        if (!ordenados) revolver(s, new Random(7));
+        return s;
+    }
+
+    static <T> void revolver(T[] a, Random r) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            T x = a[i];
+            a[i] = a[j];
+            a[j] = x;
+        }
+    }
+
+    // indices al azar para ir recorriendo en el benchmark sin llamar a Random en la medicion
+    static int[] indices(int cuantos, int limite) {
+        Random r = new Random(99);
+        int[] idx = new int[cuantos];
+        for (int i = 0; i < cuantos; i++) idx[i] = r.nextInt(limite);
+        return idx;
+    }
+}
@@ -0,0 +1,68 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Vistas ordenadas del gestor: ordenar todo, buscar por id, paginar y mantenerlas al dar altas/bajas.
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class GestorOrdenamientoBench {
+    static final int MASCARA = (1 << 16) - 1;
+
+    @Param({"10000", "1000000", "10000000"})
+    int n;
+
+    List<SistemaTareasAvanzado.Tarea> tareas;
+    SistemaTareasAvanzado.GestorOrdenamiento gestor;
+    int[] ids;
+    int i;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        SistemaTareasAvanzado.Tarea[] t = Datos.tareas(n);
+        Datos.revolver(t, new Random(3));
+        tareas = Arrays.asList(t);
+        gestor = new SistemaTareasAvanzado.GestorOrdenamiento(tareas);
+        ids = Datos.indices(MASCARA + 1, n);
+    }
+
+    // las tres vistas (id, urgencia, fecha) desde una coleccion revuelta
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SistemaTareasAvanzado.GestorOrdenamiento reconstruir() {
+        return new SistemaTareasAvanzado.GestorOrdenamiento(tareas);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SistemaTareasAvanzado.Tarea buscarPorID() {
+        return gestor.buscarPorID(1 + ids[i++ & MASCARA]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int paginaPorUrgencia() {
+        int suma = 0;
+        for (SistemaTareasAvanzado.Tarea t : gestor.pagina(SistemaTareasAvanzado.GestorOrdenamiento.Orden.URGENCIA,
+                ids[i++ & MASCARA], 50)) suma += t.id;
+        return suma;
+    }
+
+    // quitar y volver a meter una tarea en las tres vistas (lo que cuesta reprogramar)
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int quitarYAgregar() {
+        SistemaTareasAvanzado.Tarea t = tareas.get(ids[i++ & MASCARA]);
+        gestor.quitar(t);
+        gestor.agregar(t);
+        return gestor.size();
+    }
+}
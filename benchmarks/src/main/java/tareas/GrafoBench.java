@@ -0,0 +1,51 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+// Grafo con forma de arbol binario (la tarea i depende de i / 2): impacto transitivo y bajas.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class GrafoBench {
+    static final int MASCARA = (1 << 16) - 1;
+
+    @Param({"10000", "1000000"})
+    int n;
+
+    SistemaTareasAvanzado.GrafoDependencias grafo;
+    int[] ids;
+    int i;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        grafo = new SistemaTareasAvanzado.GrafoDependencias();
+        for (int id = 2; id <= n; id++) grafo.addDep(id, id / 2);
+        ids = Datos.indices(MASCARA + 1, n);
+    }
+
+    // lo que bloquea una tarea al azar (casi siempre un subarbol chico), ya con memo
+    @Benchmark
+    public BitSet impacto() {
+        return grafo.bloqueadasPor(1 + ids[i++ & MASCARA]);
+    }
+
+    // la cadena de requisitos hasta la raiz
+    @Benchmark
+    public BitSet requisitos() {
+        return grafo.requisitosDe(1 + ids[i++ & MASCARA]);
+    }
+
+    // quitar una hoja y volverla a colgar: solo toca las aristas de ese nodo
+    @Benchmark
+    public boolean quitarYReagregar() {
+        int id = n / 2 + 1 + (ids[i++ & MASCARA] % (n / 2));
+        grafo.eliminarNodo(id);
+        return grafo.addDep(id, id / 2);
+    }
+}
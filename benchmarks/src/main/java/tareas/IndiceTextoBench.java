@@ -0,0 +1,58 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Busqueda por texto con n titulos de 3 palabras (una comun y dos de un vocabulario de 5000).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class IndiceTextoBench {
+    static final String[] COMUNES = {"Diseñar", "Auditoría", "Revisión", "Deploy", "Nómina", "Campaña", "Reporte", "Cliente"};
+
+    @Param({"100000", "1000000"})
+    int n;
+
+    SistemaTareasAvanzado.IndiceTexto indice;
+    String[] vocabulario;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random r = new Random(11);
+        vocabulario = new String[5000];
+        for (int i = 0; i < vocabulario.length; i++) vocabulario[i] = "proyecto" + Integer.toString(i * 7919 % 100000, 36);
+        indice = new SistemaTareasAvanzado.IndiceTexto();
+        for (int id = 1; id <= n; id++)
+            indice.agregar(id, COMUNES[r.nextInt(COMUNES.length)] + " " + vocabulario[r.nextInt(vocabulario.length)]
+                    + " " + vocabulario[r.nextInt(vocabulario.length)], Datos.DEPTOS[id % Datos.DEPTOS.length]);
+    }
+
+    // palabra rara (n / 2500 resultados)
+    @Benchmark
+    public List<SistemaTareasAvanzado.IndiceTexto.Resultado> palabraRara() {
+        return indice.buscar(vocabulario[42], 20, false);
+    }
+
+    // palabra comun + depto: intersecta dos listas largas
+    @Benchmark
+    public List<SistemaTareasAvanzado.IndiceTexto.Resultado> comunYDepto() {
+        return indice.buscar("TI disenar", 20, false);
+    }
+
+    // lo que se teclea a medias: la ultima palabra como prefijo
+    @Benchmark
+    public List<SistemaTareasAvanzado.IndiceTexto.Resultado> prefijo() {
+        return indice.buscar("auditoria proyecto1a", 20, false);
+    }
+
+    // con error de dedo: se compara contra todo el vocabulario
+    @Benchmark
+    public List<SistemaTareasAvanzado.IndiceTexto.Resultado> difuso() {
+        return indice.buscar("revsion", 20, true);
+    }
+}
@@ -0,0 +1,73 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+// Vuelta completa a disco: guardarEstado() (snapshot binario) y cargarEstado() (leer snapshot,
+// rehacer cola/arbol/planificador/vistas y abrir la bitacora). Trabaja en un directorio temporal.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"}) // a 10M hay dos bases completas vivas al cargar
+public class PersistenciaBench {
+    // antes de que se inicialice SistemaTareasAvanzado, que lee tareas.dir una sola vez
+    static final Path DIR;
+    static {
+        try {
+            DIR = Files.createTempDirectory("tareas-bench");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setProperty("tareas.dir", DIR.toString());
+    }
+
+    @Param({"10000", "1000000", "10000000"})
+    int n;
+
+    SistemaTareasAvanzado.BaseDatos db;
+    SistemaTareasAvanzado.GrafoDependencias grafo;
+    PrintStream salida;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        salida = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // los "Estado guardado: ..." no
+        db = new SistemaTareasAvanzado.BaseDatos();
+        for (SistemaTareasAvanzado.Tarea t : Datos.tareas(n)) db.addTarea(t);
+        for (int k = 0; k < 1000; k++) db.addEmpleado("Empleado" + k, Datos.DEPTOS[k % Datos.DEPTOS.length]);
+        // una dependencia por cada 10 tareas, siempre hacia atras (sin ciclos)
+        grafo = new SistemaTareasAvanzado.GrafoDependencias();
+        for (int id = 11; id <= n; id += 10) grafo.addDep(id, id - 10);
+        SistemaTareasAvanzado.db = db;
+        SistemaTareasAvanzado.grafo = grafo;
+        SistemaTareasAvanzado.guardarEstado();
+    }
+
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        SistemaTareasAvanzado.cerrarBitacora();
+        System.setOut(salida);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(DIR)) {
+            for (Path p : ds) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public void guardar() {
+        SistemaTareasAvanzado.db = db;
+        SistemaTareasAvanzado.grafo = grafo;
+        SistemaTareasAvanzado.guardarEstado();
+    }
+
+    @Benchmark
+    public SistemaTareasAvanzado.BaseDatos cargar() {
+        SistemaTareasAvanzado.cargarEstado();
+        SistemaTareasAvanzado.cerrarBitacora();
+        return SistemaTareasAvanzado.db;
+    }
+}
@@ -0,0 +1,62 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Reportes sobre todas las tareas con 1, 2, 4... hilos: resumen por depto/urgencia, pendientes
+// ordenadas por urgencia y el merge sort paralelo solo. Cada medicion corre dentro de un
+// ForkJoinPool del tamano pedido (los parallel streams y el sort usan el pool donde corren).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ReportesBench {
+    @Param({"1000000", "10000000"})
+    int n;
+
+    @Param({"1", "2", "4", "8"})
+    int hilos;
+
+    SistemaTareasAvanzado.BaseDatos db;
+    SistemaTareasAvanzado.Tarea[] revueltas;
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        db = new SistemaTareasAvanzado.BaseDatos();
+        SistemaTareasAvanzado.Tarea[] t = Datos.tareas(n);
+        for (SistemaTareasAvanzado.Tarea x : t) db.addTarea(x);
+        revueltas = t.clone();
+        Datos.revolver(revueltas, new Random(3));
+        pool = new ForkJoinPool(hilos);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SistemaTareasAvanzado.Reportes.Resumen resumir() {
+        return pool.submit(() -> SistemaTareasAvanzado.Reportes.resumir(db, Datos.HOY + 180 * 86_400_000L)).join();
+    }
+
+    @Benchmark
+    public List<SistemaTareasAvanzado.Tarea> pendientesPorUrgencia() {
+        return pool.submit(() -> SistemaTareasAvanzado.Reportes.ordenadas(db, t -> !t.completada,
+                SistemaTareasAvanzado.GestorOrdenamiento.POR_URGENCIA)).join();
+    }
+
+    @Benchmark
+    public SistemaTareasAvanzado.Tarea[] ordenarPorFecha() {
+        SistemaTareasAvanzado.Tarea[] a = revueltas.clone();
+        pool.submit(() -> SistemaTareasAvanzado.GestorOrdenamiento.ordenarParalelo(a,
+                SistemaTareasAvanzado.GestorOrdenamiento.POR_FECHA)).join();
+        return a;
+    }
+}
@@ -0,0 +1,53 @@
+package tareas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Rueda de vencimientos con n tareas colgadas (fechas a lo largo de un año, tick de 1 s).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class VencimientosBench {
+    static final int MASCARA = (1 << 16) - 1;
+
+    @Param({"10000", "1000000"})
+    int n;
+
+    SistemaTareasAvanzado.RuedaVencimientos rueda;
+    SistemaTareasAvanzado.Tarea[] tareas;
+    int[] ids;
+    int i;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        tareas = Datos.tareas(n);
+        rueda = new SistemaTareasAvanzado.RuedaVencimientos(Datos.HOY, 1000, 24 * 3_600_000L);
+        for (SistemaTareasAvanzado.Tarea t : tareas) rueda.agregar(t.id, t.fechaEntrega.getTime());
+        ids = Datos.indices(MASCARA + 1, n);
+    }
+
+    // lo que pasa al reprogramar: se cancela y se vuelve a colgar
+    @Benchmark
+    public boolean cancelarYAgregar() {
+        SistemaTareasAvanzado.Tarea t = tareas[ids[i++ & MASCARA]];
+        boolean ok = rueda.cancelar(t.id);
+        rueda.agregar(t.id, t.fechaEntrega.getTime());
+        return ok;
+    }
+
+    // un año entero de barrido, una vez por "minuto": cada tarea avisa y vence (2n eventos)
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int barrerUnAnio() {
+        SistemaTareasAvanzado.RuedaVencimientos r = new SistemaTareasAvanzado.RuedaVencimientos(Datos.HOY, 1000, 24 * 3_600_000L);
+        for (SistemaTareasAvanzado.Tarea t : tareas) r.agregar(t.id, t.fechaEntrega.getTime());
+        int eventos = 0;
+        for (long ms = Datos.HOY; ms <= Datos.HOY + 366L * 86_400_000L; ms += 60_000L) eventos += r.avanzar(ms, (e, id) -> { });
+        return eventos;
+    }
+}
@@ -0,0 +1,100 @@
+package tareas;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+// Revision rapida (no es benchmark) de lo paralelo antes de medirlo: que el merge sort paralelo
+// sea estable y que los reportes por particion cuenten lo mismo que una pasada secuencial despues
+// de muchas altas, bajas y cambios al azar. Corre dentro de un ForkJoinPool de 4 hilos para que
+// se tome el camino paralelo aunque la maquina tenga un solo nucleo. Desde la raiz del repo:
+//
+//   java -cp benchmarks/target/benchmarks.jar tareas.VerificarParalelo [semilla]
+//
+// Si algo no cuadra truena con AssertionError (y sale con codigo distinto de 0).
+public class VerificarParalelo {
+    public static void main(String[] args) throws Exception {
+        long semilla = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.submit(() -> {
+                ordenEstable(new Random(semilla));
+                reportes(new Random(semilla));
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ordena por valor/4 (muchos empates) y compara contra Arrays.sort, que es estable
+    static void ordenEstable(Random r) {
+        Comparator<Integer> cmp = Comparator.comparingInt(v -> v / 4);
+        for (int caso = 0; caso < 200; caso++) {
+            int n = r.nextInt(caso < 100 ? 50_000 : 300_000);
+            Integer[] x = new Integer[n];
+            for (int i = 0; i < n; i++) x[i] = r.nextInt(Math.max(1, n / 3)); // objetos distintos, mismo valor
+            Integer[] esperado = x.clone();
+            Arrays.sort(esperado, cmp);
+            SistemaTareasAvanzado.GestorOrdenamiento.ordenarParalelo(x, cmp);
+            for (int i = 0; i < n; i++)
+                if (x[i] != esperado[i]) throw new AssertionError("orden no estable: caso " + caso + ", posicion " + i);
+        }
+        System.out.println("merge sort paralelo: estable en 200 casos");
+    }
+
+    // cuentas por depto/urgencia/vencidas y pendientes ordenadas, contra un recorrido secuencial
+    static void reportes(Random r) {
+        SistemaTareasAvanzado.BaseDatos db = new SistemaTareasAvanzado.BaseDatos();
+        String[] deptos = Datos.DEPTOS;
+        long ahora = Datos.HOY;
+        for (int i = 1; i <= 200_000; i++)
+            db.addTarea(tarea(i, deptos[r.nextInt(deptos.length)], r, r.nextInt(3) == 0));
+        for (int k = 0; k < 100_000; k++) {
+            int id = 1 + r.nextInt(220_000);
+            switch (r.nextInt(4)) {
+                case 0: db.removeTarea(id); break;
+                case 1: db.marcarCompletada(id); break;
+                case 2: db.addTarea(tarea(id, deptos[r.nextInt(deptos.length)], r, false)); break;
+                default: {
+                    SistemaTareasAvanzado.Tarea t = db.getTarea(id);
+                    if (t == null) break;
+                    db.desindexar(t);
+                    t.urgencia = 1 + r.nextInt(5);
+                    db.indexar(t);
+                }
+            }
+        }
+        if (db.particiones.size() != db.size()) throw new AssertionError("particiones: " + db.particiones.size() + " vs " + db.size());
+
+        // [1..5] pendientes, [6..10] completadas, [11] pendientes vencidas
+        Map<String, long[]> esperado = new TreeMap<>();
+        db.forEach(t -> {
+            long[] v = esperado.computeIfAbsent(t.departamento, k -> new long[12]);
+            v[t.completada ? 5 + t.urgencia : t.urgencia]++;
+            if (!t.completada && t.fechaEntrega.getTime() < ahora) v[11]++;
+        });
+        SistemaTareasAvanzado.Reportes.Resumen res = SistemaTareasAvanzado.Reportes.resumir(db, ahora);
+        if (!esperado.keySet().equals(res.porDepto.keySet())) throw new AssertionError("deptos: " + res.porDepto.keySet());
+        for (Map.Entry<String, long[]> e : esperado.entrySet()) {
+            SistemaTareasAvanzado.Reportes.Fila f = res.porDepto.get(e.getKey());
+            long[] v = e.getValue();
+            for (int u = 1; u <= 5; u++)
+                if (f.pendientes[u] != v[u] || f.completadas[u] != v[5 + u])
+                    throw new AssertionError("cuentas de " + e.getKey() + ", urgencia " + u);
+            if (f.vencidas != v[11]) throw new AssertionError("vencidas de " + e.getKey());
+        }
+        if (res.total.total() != db.size()) throw new AssertionError("total: " + res.total.total() + " vs " + db.size());
+
+        List<SistemaTareasAvanzado.Tarea> ordenadas = SistemaTareasAvanzado.Reportes.ordenadas(db, t -> !t.completada,
+                SistemaTareasAvanzado.GestorOrdenamiento.POR_URGENCIA);
+        List<SistemaTareasAvanzado.Tarea> pendientes = new ArrayList<>();
+        for (SistemaTareasAvanzado.Tarea t : db.todas()) if (!t.completada) pendientes.add(t);
+        pendientes.sort(SistemaTareasAvanzado.GestorOrdenamiento.POR_URGENCIA);
+        if (!ordenadas.equals(pendientes)) throw new AssertionError("pendientes ordenadas por urgencia");
+        System.out.println("reportes: " + db.size() + " tareas, cuentas y orden cuadran");
+    }
+
+    private static SistemaTareasAvanzado.Tarea tarea(int id, String depto, Random r, boolean hecha) {
+        return new SistemaTareasAvanzado.Tarea(id, "Tarea", depto, 1 + r.nextInt(5),
+                new Date(Datos.HOY + (r.nextInt(200) - 100) * 3_600_000L), hecha);
+    }
+}
@@ -0,0 +1,63 @@
+package tareas;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+// Revision rapida (no es benchmark) del modo --servidor: levanta el servidor de verdad sobre un
+// directorio temporal, da de alta una tarea que ya vencio y, sin mandar nada mas, espera a que el
+// motor mueva la rueda de vencimientos por su cuenta. Desde la raiz del repo:
+//
+//   java -cp benchmarks/target/benchmarks.jar tareas.VerificarServidor
+//
+// Si algo no cuadra truena con AssertionError (y sale con codigo distinto de 0).
+public class VerificarServidor {
+    public static void main(String[] args) throws Exception {
+        // antes de tocar SistemaTareasAvanzado: sus constantes se leen al cargar la clase
+        File dir = Files.createTempDirectory("tareas-servidor").toFile();
+        System.setProperty("tareas.dir", dir.getPath());
+        System.setProperty("tareas.vencimientos.tickMs", "50");
+        int puerto;
+        try (ServerSocket libre = new ServerSocket(0)) {
+            puerto = libre.getLocalPort();
+        }
+
+        Thread servidor = new Thread(() -> SistemaTareasAvanzado.main(new String[]{"--servidor", String.valueOf(puerto)}), "servidor");
+        servidor.setDaemon(true); // al terminar main el gancho de apagado lo cierra y guarda
+        servidor.start();
+
+        try (Socket s = conectar(puerto)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+            String ayer = LocalDate.now().minusDays(1).toString();
+            out.write("ALTA\tVencida desde ayer\tTI\t3\t" + ayer + "\n");
+            out.flush();
+            String r = in.readLine();
+            if (r == null || !r.startsWith("OK ")) throw new AssertionError("ALTA contesto " + r);
+
+            long limite = System.currentTimeMillis() + 5000;
+            while (SistemaTareasAvanzado.M_VENCIDAS.valor() == 0) {
+                if (System.currentTimeMillis() > limite)
+                    throw new AssertionError("en 5 s el servidor no aviso el vencimiento de la tarea " + r.substring(3));
+                Thread.sleep(20);
+            }
+        }
+        System.out.println("servidor: la rueda de vencimientos avanzo sola y aviso la tarea vencida");
+    }
+
+    // el servidor tarda un poco en cargar y abrir el puerto
+    private static Socket conectar(int puerto) throws Exception {
+        long limite = System.currentTimeMillis() + 10000;
+        while (true) {
+            try {
+                return new Socket("localhost", puerto);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > limite) throw new AssertionError("el servidor no abrio el puerto " + puerto);
+                Thread.sleep(50);
+            }
+        }
+    }
+}